@@ -0,0 +1,36 @@
+-- Запросы в том виде, в каком их генерирует Hibernate для репозиториев. Подключается из message-indexes.sql.
+
+\echo '--- MessageRepository.findPage: переписка двух пользователей, первая страница'
+explain (analyze, buffers, costs off)
+select * from Message m
+where ((m.sender_id = 1 and m.recipient_id = 2) or (m.sender_id = 2 and m.recipient_id = 1))
+  and m."timestamp" > timestamp '1970-01-01'
+order by m."timestamp", m.id
+limit 101;
+
+\echo '--- MessageRepository.findPage: все сообщения участника, самые новые'
+explain (analyze, buffers, costs off)
+select * from Message m
+where (m.sender_id = 1 or m.recipient_id = 1)
+order by m."timestamp" desc, m.id desc
+limit 101;
+
+\echo '--- MessageRepository.findPage: опрос новых сообщений участника'
+explain (analyze, buffers, costs off)
+select * from Message m
+where (m.sender_id = 1 or m.recipient_id = 1)
+  and m."timestamp" > (select max("timestamp") - interval '1 minute' from Message)
+order by m."timestamp", m.id
+limit 101;
+
+\echo '--- ContactRepository.exists'
+explain (analyze, buffers, costs off)
+select c.id from Contact c where c.owner_id = 1 and c.contact_id = 3 limit 1;
+
+\echo '--- RefreshToken.findByToken'
+explain (analyze, buffers, costs off)
+select * from refresh_tokens r where r.token = (select token from refresh_tokens where id = 1000) limit 1;
+
+\echo '--- User.findByEmail'
+explain (analyze, buffers, costs off)
+select * from app_users u where u.email = 'user1000@example.com' limit 1;
@@ -0,0 +1,60 @@
+-- Замер задержки запросов MessageRepository / ContactRepository / RefreshToken до и после индексов из V2__lookup_indexes.sql.
+--
+-- Запуск на пустой базе (всё создаётся в отдельной схеме bench и удаляется в конце):
+--   docker compose up -d postgresql
+--   psql -h localhost -U quarkus -d quarkus -v users=50000 -v messages=5000000 -f benchmarks/sql/message-indexes.sql
+--
+-- Сравнивайте строки "Execution Time" в блоках BEFORE и AFTER.
+
+\set ON_ERROR_STOP on
+\timing on
+
+drop schema if exists bench cascade;
+create schema bench;
+set search_path = bench;
+
+create table app_users (id bigint primary key, email varchar(255), username varchar(255));
+create table Contact (id bigint primary key, owner_id bigint, contact_id bigint);
+create table Message (id bigint primary key, sender_id bigint, recipient_id bigint, content varchar(2000), "timestamp" timestamp(6));
+create table refresh_tokens (id bigint primary key, token varchar(255), userId bigint, expiryDate timestamp(6));
+
+insert into app_users
+select g, 'user' || g || '@example.com', '@User' || g
+from generate_series(1, :users) g;
+
+-- Часть пользователей переписывается чаще остальных, как в живом чате
+insert into Message
+select g,
+       1 + (random() ^ 2 * (:users - 1))::bigint,
+       1 + (random() ^ 2 * (:users - 1))::bigint,
+       'message ' || g,
+       timestamp '2024-01-01' + (g || ' seconds')::interval
+from generate_series(1, :messages) g;
+
+insert into Contact
+select g, 1 + (g % :users), 1 + ((g % :users) + g / :users + 1) % :users
+from generate_series(1, :users * 20) g;
+
+insert into refresh_tokens
+select g, gen_random_uuid()::text, 1 + (g % :users), now() + interval '7 days'
+from generate_series(1, :users * 3) g;
+
+analyze;
+
+\echo '================ BEFORE ================'
+\i benchmarks/sql/message-indexes-queries.sql
+
+create index idx_message_sender_recipient_ts on Message (sender_id, recipient_id, "timestamp", id);
+create index idx_message_sender_ts on Message (sender_id, "timestamp", id);
+create index idx_message_recipient_ts on Message (recipient_id, "timestamp", id);
+alter table Contact add constraint uk_contact_owner_contact unique (owner_id, contact_id);
+create unique index uk_refresh_tokens_token on refresh_tokens (token);
+create index idx_refresh_tokens_user on refresh_tokens (userId);
+create index idx_app_users_email on app_users (email);
+analyze;
+
+\echo '================ AFTER ================='
+\i benchmarks/sql/message-indexes-queries.sql
+
+reset search_path;
+drop schema bench cascade;
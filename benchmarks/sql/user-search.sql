@@ -0,0 +1,138 @@
+-- Замер UserRepository.search (GET /users/search) на больших объёмах с индексами из V4__user_search.sql и V11__user_search_bounded.sql.
+--
+-- Запуск на пустой базе (всё создаётся в отдельной схеме bench и удаляется в конце):
+--   docker compose up -d postgresql
+--   psql -h localhost -U quarkus -d quarkus -v users=3000000 -f benchmarks/sql/user-search.sql
+--
+-- Для p99 под нагрузкой прогоните те же запросы через pgbench с переменным :q.
+
+\set ON_ERROR_STOP on
+\timing on
+
+create extension if not exists pg_trgm;
+drop schema if exists bench cascade;
+create schema bench;
+set search_path = bench, public;
+
+create table app_users (id bigint primary key, username varchar(255), firstName varchar(50), lastName varchar(50),
+                        photoUrl varchar(255), active boolean default true not null);
+
+-- Имена из небольшого словаря, как в жизни: много однофамильцев
+insert into app_users
+select g,
+       '@User' || g,
+       (array['Aleksandr','Maria','Ivan','Anna','Dmitry','Elena','Sergey','Olga','John','Jane'])[1 + g % 10],
+       (array['Ivanov','Petrova','Smirnov','Kuznetsova','Popov','Sokolova','Lebedev','Doe','Smith','Novikova'])[1 + (g / 10) % 10]
+           || case when g % 7 = 0 then (g % 1000)::text else '' end,
+       null,
+       g % 50 <> 0
+from generate_series(1, :users) g;
+
+create index idx_app_users_search_trgm on app_users
+    using gist ((lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))) gist_trgm_ops);
+create index idx_app_users_username_prefix on app_users ((lower(username)) collate "C");
+create index idx_app_users_first_name_prefix on app_users ((lower(firstName)) collate "C");
+create index idx_app_users_last_name_prefix on app_users ((lower(lastName)) collate "C");
+analyze app_users;
+
+\echo '--- короткий запрос: начало username'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from app_users
+where active and lower(username) collate "C" like '@us%'
+order by lower(username) collate "C", id
+limit 20;
+
+\echo '--- user (начало каждого username): совпадения по началу'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from (
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(username) collate "C" like '@user%' order by lower(username) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(firstName) collate "C" like 'user%' order by lower(firstName) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(lastName) collate "C" like 'user%' order by lower(lastName) collate "C", id limit 20)
+) u
+order by case when lower(username) = '@user' or lower(firstName) = 'user' or lower(lastName) = 'user' then 0 else 1 end,
+         word_similarity('user', lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))) desc, id
+limit 20;
+
+\echo '--- user (начало каждого username): добор похожих'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from app_users
+where active and 'user' <% lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+order by 'user' <<-> lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+limit 20;
+
+\echo '--- редкая подстрока (username): совпадения по началу'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from (
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(username) collate "C" like '@user123456%' order by lower(username) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(firstName) collate "C" like 'user123456%' order by lower(firstName) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(lastName) collate "C" like 'user123456%' order by lower(lastName) collate "C", id limit 20)
+) u
+order by case when lower(username) = '@user123456' or lower(firstName) = 'user123456' or lower(lastName) = 'user123456' then 0 else 1 end,
+         word_similarity('user123456', lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))) desc, id
+limit 20;
+
+\echo '--- редкая подстрока (username): добор похожих'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from app_users
+where active and 'user123456' <% lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+order by 'user123456' <<-> lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+limit 20;
+
+\echo '--- фамилия с опечаткой: совпадения по началу'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from (
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(username) collate "C" like '@kuznetsva700%' order by lower(username) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(firstName) collate "C" like 'kuznetsva700%' order by lower(firstName) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(lastName) collate "C" like 'kuznetsva700%' order by lower(lastName) collate "C", id limit 20)
+) u
+order by case when lower(username) = '@kuznetsva700' or lower(firstName) = 'kuznetsva700' or lower(lastName) = 'kuznetsva700' then 0 else 1 end,
+         word_similarity('kuznetsva700', lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))) desc, id
+limit 20;
+
+\echo '--- фамилия с опечаткой: добор похожих'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from app_users
+where active and 'kuznetsva700' <% lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+order by 'kuznetsva700' <<-> lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+limit 20;
+
+\echo '--- частое имя (каждая десятая строка): совпадения по началу'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from (
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(username) collate "C" like '@maria%' order by lower(username) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(firstName) collate "C" like 'maria%' order by lower(firstName) collate "C", id limit 20)
+    union
+    (select id, username, firstName, lastName, photoUrl from app_users
+     where active and lower(lastName) collate "C" like 'maria%' order by lower(lastName) collate "C", id limit 20)
+) u
+order by case when lower(username) = '@maria' or lower(firstName) = 'maria' or lower(lastName) = 'maria' then 0 else 1 end,
+         word_similarity('maria', lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))) desc, id
+limit 20;
+
+\echo '--- частое имя (каждая десятая строка): добор похожих'
+explain (analyze, buffers, costs off)
+select id, username, firstName, lastName, photoUrl from app_users
+where active and 'maria' <% lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+order by 'maria' <<-> lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))
+limit 20;
+
+reset search_path;
+drop schema bench cascade;
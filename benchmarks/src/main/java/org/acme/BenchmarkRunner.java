@@ -0,0 +1,42 @@
+package org.acme;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Обёртка над стандартным JMH Main: принимает те же аргументы, но по умолчанию пишет результаты в JSON
+ * ({@code target/jmh-results/<время запуска>.json}), чтобы их можно было сравнивать между сборками.
+ * Явные {@code -rf}/{@code -rff} имеют приоритет.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getResultFormat().hasValue() || commandLine.getResult().hasValue()) {
+            new Runner(options.build()).run();
+            return;
+        }
+
+        Path resultDir = Path.of("target", "jmh-results");
+        Files.createDirectories(resultDir);
+        String fileName = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json";
+        options.resultFormat(ResultFormatType.JSON)
+                .result(resultDir.resolve(fileName).toString());
+        new Runner(options.build()).run();
+    }
+}
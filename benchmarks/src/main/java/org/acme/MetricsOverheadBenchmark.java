@@ -0,0 +1,71 @@
+package org.acme;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена одного измерения таймером в том виде, как они настроены в сервисе (Prometheus, гистограмма
+ * с бакетами для p99), по сравнению с пустым реестром. Для сравнения с полезной работой:
+ * подпись JWT — десятки микросекунд (TokenBenchmark), запрос к БД — сотни.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"noop", "prometheus", "prometheus-histogram"})
+    String registry;
+
+    private Timer timer;
+
+    @Setup
+    public void setup() {
+        switch (registry) {
+            case "noop" -> timer = Timer.builder("bench.timer").register(new CompositeMeterRegistry());
+            case "prometheus" -> timer = Timer.builder("bench.timer")
+                    .register(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+            case "prometheus-histogram" -> timer = Timer.builder("bench.timer")
+                    .publishPercentileHistogram()
+                    .register(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+            default -> throw new IllegalArgumentException(registry);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        timer.record(137, TimeUnit.MICROSECONDS);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordContended() {
+        timer.record(137, TimeUnit.MICROSECONDS);
+    }
+
+    @Benchmark
+    public long recordSample() {
+        Timer.Sample sample = Timer.start();
+        long work = System.nanoTime();
+        sample.stop(timer);
+        return work;
+    }
+}
@@ -0,0 +1,101 @@
+package org.acme.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.acme.model.Message;
+import org.acme.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Путь ответа GET /messages после запроса к базе: {@link MessageDTO.MessageResponse#from(Message)} для каждой строки,
+ * форматирование времени ISO_LOCAL_DATE_TIME и сериализация страницы в JSON. Размеры соответствуют
+ * limit = 1, значению по умолчанию и максимуму MessageResource.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageMappingBenchmark {
+
+    @Param({"1", "100", "500"})
+    int size;
+
+    private List<Message> messages;
+    private List<MessageDTO.MessageResponse> responses;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        User sender = user(1L, "@Sender");
+        User recipient = user(2L, "@Recipient");
+        LocalDateTime start = LocalDateTime.of(2024, 1, 26, 14, 30, 0, 123_456_000);
+
+        messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Message message = new Message();
+            message.id = (long) i + 1;
+            message.sender = i % 2 == 0 ? sender : recipient;
+            message.recipient = i % 2 == 0 ? recipient : sender;
+            message.content = "Сообщение номер " + i + ", обычной для чата длины";
+            message.timestamp = start.plusSeconds(i * 7L);
+            messages.add(message);
+        }
+        responses = map();
+
+        // Те же настройки, что задаёт quarkus-jackson по умолчанию
+        objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @Benchmark
+    public List<MessageDTO.MessageResponse> map() {
+        return messages.stream()
+                .map(MessageDTO.MessageResponse::from)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void formatTimestamps(Blackhole blackhole) {
+        for (Message message : messages) {
+            blackhole.consume(message.timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(map());
+    }
+
+    private static User user(Long id, String username) {
+        User user = new User();
+        user.id = id;
+        user.username = username;
+        return user;
+    }
+}
@@ -0,0 +1,47 @@
+package org.acme.service;
+
+import io.quarkus.elytron.security.common.BcryptUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одной операции BCrypt, которую {@link PasswordHasher} выполняет на своём пуле.
+ * Деление числа ядер на это время даёт потолок логинов и регистраций в секунду.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "password123";
+
+    private String hash;
+
+    @Setup
+    public void setup() {
+        hash = BcryptUtil.bcryptHash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return BcryptUtil.bcryptHash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return BcryptUtil.matches(PASSWORD, hash);
+    }
+}
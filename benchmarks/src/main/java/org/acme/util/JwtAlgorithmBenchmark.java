@@ -0,0 +1,92 @@
+package org.acme.util;
+
+import io.smallrye.jwt.algorithm.SignatureAlgorithm;
+import io.smallrye.jwt.auth.principal.DefaultJWTParser;
+import io.smallrye.jwt.auth.principal.JWTAuthContextInfo;
+import org.acme.model.User;
+import org.acme.service.UserSnapshot;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность подписи и проверки access-токена для RS256 и ES256, с полным и компактным
+ * набором claims ({@code chat.jwt.compact}). Проверка — тот же парсер smallrye-jwt, что и в сервисе.
+ * Размер компактного ES256-токена проверяется в {@code CompactEs256TokenTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAlgorithmBenchmark {
+
+    private static final String ISSUER = "https://java41.ru/issuer";
+
+    @Param({"RS256", "ES256"})
+    String algorithm;
+
+    @Param({"false", "true"})
+    boolean compact;
+
+    private JwtSigner jwtSigner;
+    private UserSnapshot user;
+    private String token;
+    private DefaultJWTParser parser;
+
+    @Setup
+    public void setup() throws Exception {
+        boolean ec = "ES256".equals(algorithm);
+        String keyDir = ec ? "es256/" : "";
+
+        jwtSigner = new JwtSigner();
+        jwtSigner.issuer = ISSUER;
+        jwtSigner.keyLocation = keyDir + "privateKey.pem";
+        jwtSigner.algorithm = algorithm;
+        jwtSigner.compact = compact;
+        jwtSigner.init();
+
+        User entity = new User();
+        entity.id = 42L;
+        entity.email = "user42@example.com";
+        entity.roles = "User";
+        entity.birthdate = "1990-01-01";
+        entity.username = "@User42";
+        entity.firstName = "Aleksandr";
+        entity.lastName = "Ivanov";
+        user = UserSnapshot.of(entity);
+        token = jwtSigner.sign(user, TokenUtils.ACCESS_TOKEN_LIFETIME_SECONDS);
+
+        PublicKey publicKey = KeyFactory.getInstance(ec ? "EC" : "RSA")
+                .generatePublic(new X509EncodedKeySpec(JwtSigner.readPem(keyDir + "publicKey.pem")));
+        JWTAuthContextInfo contextInfo = new JWTAuthContextInfo(publicKey, ISSUER);
+        contextInfo.setSignatureAlgorithm(Set.of(SignatureAlgorithm.fromAlgorithm(algorithm)));
+        parser = new DefaultJWTParser(contextInfo);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtSigner.sign(user, TokenUtils.ACCESS_TOKEN_LIFETIME_SECONDS);
+    }
+
+    @Benchmark
+    public JsonWebToken verify() throws Exception {
+        return parser.parse(token);
+    }
+}
@@ -0,0 +1,141 @@
+package org.acme.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.jwt.auth.principal.DefaultJWTParser;
+import io.smallrye.jwt.auth.principal.JWTAuthContextInfo;
+import io.smallrye.jwt.build.Jwt;
+import io.smallrye.jwt.util.KeyUtils;
+import org.acme.model.User;
+import org.acme.service.UserSnapshot;
+import org.eclipse.microprofile.jwt.Claims;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск и проверка токенов: {@link TokenUtils#generateAccessToken(User)} как есть ({@link JwtSigner}),
+ * прежний путь через построитель {@code Jwt} для сравнения, проверка подписи тем же парсером smallrye-jwt,
+ * что и в сервисе, повторная проверка через {@link CachingJWTCallerPrincipalFactory} и генерация значения refresh-токена.
+ * Сохранение refresh-токена в базу сюда не входит — это задача нагрузочного теста.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBenchmark {
+
+    private static final String ISSUER = "https://java41.ru/issuer";
+
+    private TokenUtils tokenUtils;
+    private User user;
+    private UserSnapshot snapshot;
+    private String token;
+    private DefaultJWTParser parser;
+    private JWTAuthContextInfo contextInfo;
+    private CachingJWTCallerPrincipalFactory cachingFactory;
+
+    @Setup
+    public void setup() throws Exception {
+        JwtSigner jwtSigner = new JwtSigner();
+        jwtSigner.issuer = ISSUER;
+        jwtSigner.keyLocation = "privateKey.pem";
+        jwtSigner.algorithm = "RS256";
+        jwtSigner.init();
+
+        tokenUtils = new TokenUtils();
+        tokenUtils.jwtSigner = jwtSigner;
+        tokenUtils.registry = new SimpleMeterRegistry();
+        tokenUtils.init();
+
+        user = new User();
+        user.id = 42L;
+        user.email = "user42@example.com";
+        user.roles = "User";
+        user.birthdate = "1990-01-01";
+        user.username = "@User42";
+        user.firstName = "Aleksandr";
+        user.lastName = "Ivanov";
+
+        snapshot = UserSnapshot.of(user);
+        token = tokenUtils.generateAccessToken(user);
+        contextInfo = new JWTAuthContextInfo(KeyUtils.readPublicKey("publicKey.pem"), ISSUER);
+        parser = new DefaultJWTParser(contextInfo);
+
+        cachingFactory = new CachingJWTCallerPrincipalFactory();
+        cachingFactory.enabled = true;
+        cachingFactory.maximumSize = 10_000;
+        cachingFactory.registry = new SimpleMeterRegistry();
+        cachingFactory.init();
+    }
+
+    @Benchmark
+    public String signAccessToken() {
+        return tokenUtils.generateAccessToken(user);
+    }
+
+    /**
+     * Как {@link #signAccessToken()}, но несколько потоков делят пул {@link java.security.Signature}.
+     */
+    @Benchmark
+    @Threads(4)
+    public String signAccessTokenContended() {
+        return tokenUtils.generateAccessToken(user);
+    }
+
+    /**
+     * Прежний {@code TokenUtils.sign}: построитель smallrye-jwt, ключ по конфигурации на каждый вызов.
+     */
+    @Benchmark
+    public String signAccessTokenWithBuilder() {
+        return Jwt.issuer(ISSUER)
+                .subject(snapshot.id.toString())
+                .groups(new HashSet<>(Arrays.asList(snapshot.roles.split(","))))
+                .claim(Claims.birthdate.name(), snapshot.birthdate)
+                .claim("email", snapshot.email)
+                .claim("username", snapshot.username)
+                .claim("firstName", snapshot.firstName)
+                .claim("lastName", snapshot.lastName)
+                .issuedAt(Instant.now())
+                .expiresIn(900)
+                .sign();
+    }
+
+    @Benchmark
+    public JsonWebToken verifyAccessToken() throws Exception {
+        return parser.parse(token);
+    }
+
+    /**
+     * Повторное предъявление того же токена: после первого вызова — SHA-256 токена и поиск в кеше вместо RSA.
+     */
+    @Benchmark
+    public JsonWebToken verifyAccessTokenCached() throws Exception {
+        return cachingFactory.parse(token, contextInfo);
+    }
+
+    /**
+     * {@link UUID#randomUUID()} берёт байты из общего SecureRandom; несколько потоков показывают конкуренцию за него.
+     */
+    @Benchmark
+    @Threads(4)
+    public String refreshTokenValue() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -1,20 +1,27 @@
 package org.acme.controller;
 
-import io.quarkus.elytron.security.common.BcryptUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.vertx.core.http.HttpServerRequest;
 import jakarta.annotation.security.PermitAll;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.acme.dto.AuthDTO;
 import org.acme.dto.TokenResponseDTO;
-import org.acme.model.RefreshToken;
 import org.acme.model.User;
+import org.acme.service.LoginRateLimiter;
+import org.acme.service.PasswordHasher;
+import org.acme.service.RefreshTokenStore;
+import org.acme.service.UserCache;
+import org.acme.service.UserSnapshot;
 import org.acme.util.TokenUtils;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
@@ -24,11 +31,11 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 
 @Path("/auth")
+@RunOnVirtualThread
 @RequestScoped
 @Tag(name = "Authentication", description = "Endpoints for user authentication and authorization")
 public class AuthResource {
@@ -36,17 +43,33 @@ public class AuthResource {
     @Inject
     TokenUtils tokenUtils;
 
+    @Inject
+    PasswordHasher passwordHasher;
+
+    @Inject
+    LoginRateLimiter loginRateLimiter;
+
+    @Inject
+    RefreshTokenStore refreshTokenStore;
+
+    @Inject
+    UserCache userCache;
+
+    @Inject
+    MeterRegistry registry;
+
     @POST
     @Path("/login")
     @PermitAll
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    @Transactional
     @Operation(summary = "Аутентификация пользователя", description = "Позволяет пользователю войти в систему, предоставив email и пароль. Возвращает JWT и refresh-токены.")
     @APIResponse(responseCode = "200", description = "Успешная аутентификация", content = @Content(schema = @Schema(implementation = TokenResponseDTO.class), example = "{\"accessToken\": \"eyJhbG...\", \"refreshToken\": \"f47ac10b-58cc-...\"}"))
     @APIResponse(responseCode = "400", description = "Отсутствуют обязательные поля или неверный формат", content = @Content(example = "{\"error\": \"Email, пароль и дата рождения обязательны\"}"))
     @APIResponse(responseCode = "401", description = "Неверные учетные данные", content = @Content(example = "{\"error\": \"Неверные учетные данные\"}"))
-    public Response login(@RequestBody(description = "Учетные данные для входа") AuthDTO.Login login) {
+    @APIResponse(responseCode = "429", description = "Слишком много попыток входа с этого адреса или для этого email", content = @Content(example = "{\"error\": \"Слишком много попыток входа, повторите попытку позже\"}"))
+    @APIResponse(responseCode = "503", description = "Сервер перегружен проверкой паролей", content = @Content(example = "{\"error\": \"Сервер перегружен, повторите попытку позже\"}"))
+    public Response login(@RequestBody(description = "Учетные данные для входа") AuthDTO.Login login, @Context HttpServerRequest request) {
         if (login.email == null || login.password == null) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity("{\"error\":\"Email и пароль обязательны\"}")
@@ -54,8 +77,20 @@ public class AuthResource {
                     .build();
         }
 
+        // С включённым proxy-address-forwarding здесь адрес клиента из X-Forwarded-For, а не адрес Traefik
+        String clientIp = request.remoteAddress() != null ? request.remoteAddress().hostAddress() : null;
+        if (!loginRateLimiter.tryAcquire(clientIp, login.email)) {
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", loginRateLimiter.retryAfterSeconds())
+                    .entity("{\"error\":\"Слишком много попыток входа, повторите попытку позже\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+
+        // BCrypt проверяется до открытия транзакции, чтобы не держать соединение с БД ~100 мс
         User user = User.findByEmail(login.email);
-        if (user == null || !BcryptUtil.matches(login.password, user.password)) {
+        if (user == null || !passwordHasher.matches(login.password, user.password)) {
+            registry.counter("chat.auth.login", "result", "invalid_credentials").increment();
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity("{\"error\":\"Неверные учетные данные\"}")
                     .type(MediaType.APPLICATION_JSON)
@@ -65,6 +100,7 @@ public class AuthResource {
         String accessToken = tokenUtils.generateAccessToken(user);
         String refreshToken = tokenUtils.generateRefreshToken(user);
 
+        registry.counter("chat.auth.login", "result", "success").increment();
         return Response.ok(new TokenResponseDTO(accessToken, refreshToken)).build();
     }
 
@@ -73,11 +109,11 @@ public class AuthResource {
     @PermitAll
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    @Transactional
     @Operation(summary = "Регистрация пользователя", description = "Регистрирует нового пользователя и возвращает JWT и refresh-токены")
     @APIResponse(responseCode = "201", description = "Пользователь успешно зарегистрирован", content = @Content(schema = @Schema(implementation = TokenResponseDTO.class), example = "{\"accessToken\": \"eyJhbG...\", \"refreshToken\": \"a1b2c3d4-e5f6-...\"}"))
     @APIResponse(responseCode = "400", description = "Отсутствуют обязательные поля", content = @Content(example = "{\"error\": \"Email, пароль и дата рождения обязательны\"}"))
     @APIResponse(responseCode = "409", description = "Email уже существует", content = @Content(example = "{\"error\": \"Пользователь с таким email уже существует\"}"))
+    @APIResponse(responseCode = "503", description = "Сервер перегружен хешированием паролей", content = @Content(example = "{\"error\": \"Сервер перегружен, повторите попытку позже\"}"))
     public Response register(@RequestBody(description = "Данные для регистрации") AuthDTO.Registration registration) {
         if (registration.email == null || registration.password == null || registration.birthdate == null) {
             return Response.status(Response.Status.BAD_REQUEST)
@@ -115,8 +151,9 @@ public class AuthResource {
                     .build();
         }
 
-        User.add(registration.email, registration.password, "User", registration.birthdate, registration.firstName, registration.lastName, null);
-        User newUser = User.findByEmail(registration.email);
+        String passwordHash = passwordHasher.hash(registration.password);
+        User newUser = QuarkusTransaction.requiringNew().call(() ->
+                User.add(registration.email, passwordHash, "User", registration.birthdate, registration.firstName, registration.lastName, null));
 
         String accessToken = tokenUtils.generateAccessToken(newUser);
         String refreshToken = tokenUtils.generateRefreshToken(newUser);
@@ -132,7 +169,6 @@ public class AuthResource {
     @PermitAll
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    @Transactional
     @Operation(summary = "Обновление токена", description = "Обновляет JWT с использованием действительного refresh токена")
     @APIResponse(responseCode = "200", description = "Выданы новые токены", content = @Content(schema = @Schema(implementation = TokenResponseDTO.class), example = "{\"accessToken\": \"eyJhbG...\", \"refreshToken\": \"f47ac10b-58cc-...\"}"))
     @APIResponse(responseCode = "400", description = "Отсутствует refresh токен", content = @Content(example = "{\"error\": \"Refresh token обязателен\"}"))
@@ -145,15 +181,16 @@ public class AuthResource {
                     .build();
         }
 
-        RefreshToken refreshTokenEntity = RefreshToken.findByToken(refresh.refreshToken);
-        if (refreshTokenEntity == null || refreshTokenEntity.expiryDate.isBefore(LocalDateTime.now())) {
+        // Токен гасится сразу: повтор того же токена, в том числе параллельный, получит 401
+        Long userId = refreshTokenStore.consume(refresh.refreshToken);
+        if (userId == null) {
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity("{\"error\":\"Недействительный или истекший refresh token\"}")
                     .type(MediaType.APPLICATION_JSON)
                     .build();
         }
 
-        User user = User.findById(refreshTokenEntity.userId);
+        UserSnapshot user = userCache.findById(userId);
         if (user == null) {
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity("{\"error\":\"Пользователь, связанный с refresh token, не найден\"}")
@@ -161,9 +198,8 @@ public class AuthResource {
                     .build();
         }
 
-        refreshTokenEntity.delete();
         String accessToken = tokenUtils.generateAccessToken(user);
-        String newRefreshToken = tokenUtils.generateRefreshToken(user);
+        String newRefreshToken = refreshTokenStore.issue(user.id);
 
         return Response.ok(new TokenResponseDTO(accessToken, newRefreshToken)).build();
     }
@@ -173,7 +209,6 @@ public class AuthResource {
     @PermitAll
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    @Transactional
     @Operation(summary = "Выход пользователя", description = "Аннулирует refresh токен")
     @APIResponse(responseCode = "200", description = "Успешный выход", content = @Content(example = "{\"message\": \"Logged out successfully\"}"))
     @APIResponse(responseCode = "400", description = "Отсутствует или недействительный refresh токен", content = @Content(example = "{\"error\": \"Invalid refresh token\"}"))
@@ -185,9 +220,7 @@ public class AuthResource {
                     .build();
         }
 
-        RefreshToken refreshTokenEntity = RefreshToken.findByToken(refresh.refreshToken);
-        if (refreshTokenEntity != null) {
-            refreshTokenEntity.delete();
+        if (refreshTokenStore.revoke(refresh.refreshToken)) {
             return Response.ok().entity("{\"message\":\"Logged out successfully\"}").type(MediaType.APPLICATION_JSON).build();
         }
         return Response.status(Response.Status.BAD_REQUEST).entity("{\"error\":\"Invalid refresh token\"}").type(MediaType.APPLICATION_JSON).build();
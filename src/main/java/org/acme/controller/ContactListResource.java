@@ -1,5 +1,6 @@
 package org.acme.controller;
 
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -13,8 +14,12 @@ import org.acme.dto.ContactDTO;
 import org.acme.model.Contact;
 import org.acme.model.User;
 import org.acme.repository.ContactRepository;
+import org.acme.service.UserCache;
+import org.acme.service.UserSnapshot;
+import org.acme.util.KeysetCursor;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.headers.Header;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
@@ -22,18 +27,24 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/contacts")
+@RunOnVirtualThread
 @Tag(name = "Контакты", description = "Операции для управления списком контактов пользователя")
 public class ContactListResource {
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500;
+
     @Inject
     ContactRepository contactRepository;
 
     @Inject
     SecurityContext securityContext;
 
+    @Inject
+    UserCache userCache;
+
     @POST
     @RolesAllowed("User")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -46,7 +57,7 @@ public class ContactListResource {
     @APIResponse(responseCode = "409", description = "Пользователь уже в контактах", content = @Content(example = "{\"error\": \"Пользователь уже в списке контактов\"}"))
     public Response addContact(@RequestBody(description = "ID пользователя для добавления в контакты") AddContactDTO contactDTO) {
         String currentUserId = securityContext.getUserPrincipal().getName();
-        User currentUser = User.findById(Long.parseLong(currentUserId));
+        UserSnapshot currentUser = userCache.findById(Long.parseLong(currentUserId));
 
         if (contactDTO.id == null || contactDTO.id.equals(currentUser.id)) {
             return Response.status(Response.Status.BAD_REQUEST)
@@ -54,7 +65,7 @@ public class ContactListResource {
                     .build();
         }
 
-        User contactUser = User.findById(contactDTO.id);
+        UserSnapshot contactUser = userCache.findById(contactDTO.id);
         if (contactUser == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("{\"error\":\"Пользователь не найден\"}")
@@ -68,8 +79,8 @@ public class ContactListResource {
         }
 
         Contact contact = new Contact();
-        contact.owner = currentUser;
-        contact.contact = contactUser;
+        contact.owner = Contact.getEntityManager().getReference(User.class, currentUser.id);
+        contact.contact = Contact.getEntityManager().getReference(User.class, contactUser.id);
         contact.persist();
 
         return Response.status(Response.Status.CREATED)
@@ -80,9 +91,15 @@ public class ContactListResource {
     @GET
     @RolesAllowed("User")
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Получить список контактов", description = "Возвращает список контактов текущего пользователя.")
-    @APIResponse(responseCode = "200", description = "Список контактов", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ContactDTO.class, type = SchemaType.ARRAY), example = "[{\"id\": 2, \"username\": \"@User456\", \"firstName\": \"Jane\", \"lastName\": \"Smith\", \"photoUrl\": \"https://example.com/photo2.jpg\"}]"))
-    public List<ContactDTO> getContacts() {
+    @Operation(summary = "Получить список контактов", description = "Возвращает страницу контактов текущего пользователя. " +
+            "Если есть следующая страница, её курсор возвращается в заголовке X-Next-Cursor; передайте его в параметре 'cursor'.")
+    @APIResponse(responseCode = "200", description = "Список контактов",
+            headers = @Header(name = KeysetCursor.HEADER, description = "Курсор следующей страницы; отсутствует на последней странице", schema = @Schema(type = SchemaType.STRING)),
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ContactDTO.class, type = SchemaType.ARRAY), example = "[{\"id\": 2, \"username\": \"@User456\", \"firstName\": \"Jane\", \"lastName\": \"Smith\", \"photoUrl\": \"https://example.com/photo2.jpg\"}]"))
+    @APIResponse(responseCode = "400", description = "Неверные параметры пагинации", content = @Content(example = "{\"error\": \"Неверный курсор\"}"))
+    public Response getContacts(
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit,
+            @QueryParam("cursor") String cursor) {
         String currentUserId = securityContext.getUserPrincipal().getName();
         if (currentUserId == null || currentUserId.isBlank()) {
             throw new WebApplicationException("Невалидный JWT-токен: отсутствует ID пользователя", Response.Status.UNAUTHORIZED);
@@ -95,14 +112,38 @@ public class ContactListResource {
             throw new WebApplicationException("Невалидный ID пользователя в токене", Response.Status.BAD_REQUEST);
         }
 
-        User currentUser = User.findById(userId);
+        UserSnapshot currentUser = userCache.findById(userId);
         if (currentUser == null) {
             throw new WebApplicationException("Пользователь не найден", Response.Status.NOT_FOUND);
         }
 
-        return contactRepository.findByOwner(currentUser.id)
-                .stream()
-                .map(contact -> new ContactDTO(contact.contact.id, contact.contact.username, contact.contact.firstName, contact.contact.lastName, contact.contact.photoUrl))
-                .collect(Collectors.toList());
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'limit' должен быть от 1 до " + MAX_PAGE_SIZE + "\"}")
+                    .build();
+        }
+
+        KeysetCursor pageCursor = null;
+        if (cursor != null) {
+            try {
+                pageCursor = KeysetCursor.decodeId(cursor);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Неверный курсор\"}")
+                        .build();
+            }
+        }
+
+        List<ContactDTO> contacts = contactRepository.findPageByOwner(currentUser.id, pageCursor, limit + 1);
+        boolean hasMore = contacts.size() > limit;
+        if (hasMore) {
+            contacts = contacts.subList(0, limit);
+        }
+
+        Response.ResponseBuilder builder = Response.ok(contacts);
+        if (hasMore) {
+            builder.header(KeysetCursor.HEADER, KeysetCursor.ofId(contacts.get(contacts.size() - 1).id).encode());
+        }
+        return builder.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package org.acme.controller;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import org.acme.dto.ConversationDTO;
+import org.acme.model.Conversation;
+import org.acme.repository.ConversationRepository;
+import org.acme.service.UserCache;
+import org.acme.service.UserSnapshot;
+import org.acme.util.KeysetCursor;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.headers.Header;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Path("/conversations")
+@Tag(name = "Диалоги", description = "Список чатов пользователя с последним сообщением и счётчиками непрочитанного")
+public class ConversationResource {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+
+    @Inject
+    ConversationRepository conversationRepository;
+
+    @Inject
+    UserCache userCache;
+
+    @GET
+    @RolesAllowed("User")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Получить список диалогов", description = "Возвращает диалоги текущего пользователя, отсортированные по времени последнего сообщения (сначала новые). " +
+            "Если есть следующая страница, её курсор возвращается в заголовке X-Next-Cursor; передайте его в параметре 'cursor'.")
+    @APIResponse(responseCode = "200", description = "Список диалогов",
+            headers = @Header(name = KeysetCursor.HEADER, description = "Курсор следующей страницы; отсутствует на последней странице", schema = @Schema(type = SchemaType.STRING)),
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ConversationDTO.class, type = SchemaType.ARRAY), example = "[{\"userId\": 2, \"username\": \"@User456\", \"firstName\": \"Jane\", \"lastName\": \"Smith\", \"photoUrl\": null, \"lastMessageId\": 123, \"lastMessageSenderId\": 2, \"lastMessagePreview\": \"Привет!\", \"lastMessageTimestamp\": \"2024-01-26T14:30:00\", \"unreadCount\": 1}]"))
+    @APIResponse(responseCode = "400", description = "Неверные параметры пагинации", content = @Content(example = "{\"error\": \"Неверный курсор\"}"))
+    @APIResponse(responseCode = "404", description = "Пользователь не найден", content = @Content(example = "{\"error\": \"Пользователь не найден\"}"))
+    public Response getConversations(
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit,
+            @QueryParam("cursor") String cursor,
+            @Context SecurityContext securityContext) {
+        String currentUserId = securityContext.getUserPrincipal().getName();
+        UserSnapshot currentUser = userCache.findById(Long.parseLong(currentUserId));
+        if (currentUser == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\":\"Пользователь не найден\"}")
+                    .build();
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'limit' должен быть от 1 до " + MAX_PAGE_SIZE + "\"}")
+                    .build();
+        }
+
+        KeysetCursor pageCursor = null;
+        if (cursor != null) {
+            try {
+                pageCursor = KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Неверный курсор\"}")
+                        .build();
+            }
+        }
+
+        List<Conversation> conversations = conversationRepository.findPage(currentUser.id, pageCursor, limit + 1);
+        boolean hasMore = conversations.size() > limit;
+        if (hasMore) {
+            conversations = conversations.subList(0, limit);
+        }
+
+        List<ConversationDTO> response = conversations.stream()
+                .map(conversation -> ConversationDTO.from(conversation, currentUser.id))
+                .collect(Collectors.toList());
+
+        Response.ResponseBuilder builder = Response.ok(response);
+        if (hasMore) {
+            Conversation last = conversations.get(conversations.size() - 1);
+            builder.header(KeysetCursor.HEADER, KeysetCursor.of(last.lastMessageAt, last.id).encode());
+        }
+        return builder.build();
+    }
+
+    @POST
+    @Path("/{userId}/read")
+    @RolesAllowed("User")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Transactional
+    @Operation(summary = "Отметить диалог прочитанным", description = "Сбрасывает счётчик непрочитанных сообщений текущего пользователя в диалоге с указанным пользователем.")
+    @APIResponse(responseCode = "204", description = "Диалог отмечен прочитанным")
+    @APIResponse(responseCode = "404", description = "Диалог не найден", content = @Content(example = "{\"error\": \"Диалог не найден\"}"))
+    public Response markRead(@PathParam("userId") Long userId, @Context SecurityContext securityContext) {
+        Long currentUserId = Long.parseLong(securityContext.getUserPrincipal().getName());
+        if (!conversationRepository.markRead(currentUserId, userId)) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\":\"Диалог не найден\"}")
+                    .build();
+        }
+        return Response.noContent().build();
+    }
+}
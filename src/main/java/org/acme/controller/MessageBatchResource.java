@@ -0,0 +1,158 @@
+package org.acme.controller;
+
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import org.acme.dto.MessageDTO;
+import org.acme.model.Message;
+import org.acme.repository.MessageRepository;
+import org.acme.repository.UserRepository;
+import org.acme.service.ClientMessageIdCache;
+import org.acme.service.UserCache;
+import org.acme.service.UserSnapshot;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Path("/messages/batch")
+@RunOnVirtualThread
+@Tag(name = "Messages", description = "Operations related to messages")
+public class MessageBatchResource {
+
+    static final int MAX_CONTENT_LENGTH = 2000;
+
+    @ConfigProperty(name = "chat.messages.batch.max-size", defaultValue = "500")
+    int maxBatchSize;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    UserCache userCache;
+
+    @POST
+    @RolesAllowed("User")
+    @Transactional
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Пакетная отправка сообщений",
+            description = "Отправляет несколько сообщений от текущего пользователя одной транзакцией. Получатели проверяются одним запросом, " +
+                    "сообщения вставляются пачкой. Ошибка в одном сообщении не отменяет остальные: результат возвращается по каждому элементу " +
+                    "в порядке запроса, со статусом, который вернул бы POST /messages. Сообщения с уже отправленным clientMessageId " +
+                    "не создаются повторно и возвращаются с replayed=true.")
+    @APIResponse(responseCode = "200", description = "Результаты по каждому сообщению", content = @Content(
+            mediaType = MediaType.APPLICATION_JSON,
+            schema = @Schema(implementation = MessageDTO.BatchItemResult.class, type = SchemaType.ARRAY),
+            example = "[{\"index\": 0, \"status\": 201, \"message\": {\"id\": 123, \"senderId\": 456, \"senderUsername\": \"@Sender\", \"recipientId\": 789, \"recipientUsername\": \"@Recipient\", \"content\": \"Привет!\", \"timestamp\": \"2024-01-26T14:30:00\"}, \"error\": null}, " +
+                    "{\"index\": 1, \"status\": 404, \"message\": null, \"error\": \"Получатель не найден\"}]"))
+    @APIResponse(responseCode = "400", description = "Пустой или слишком большой пакет", content = @Content(example = "{\"error\": \"Передайте от 1 до 500 сообщений\"}"))
+    @APIResponse(responseCode = "404", description = "Отправитель не найден", content = @Content(example = "{\"error\": \"Отправитель не найден\"}"))
+    public Response sendBatch(MessageDTO.BatchRequest batch, @Context SecurityContext securityContext) {
+        Long senderId;
+        try {
+            senderId = Long.parseLong(securityContext.getUserPrincipal().getName());
+        } catch (NumberFormatException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Невалидный ID пользователя в токене\"}")
+                    .build();
+        }
+
+        UserSnapshot sender = userCache.findById(senderId);
+        if (sender == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\": \"Отправитель не найден\"}")
+                    .build();
+        }
+
+        if (batch == null || batch.messages == null || batch.messages.isEmpty() || batch.messages.size() > maxBatchSize) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Передайте от 1 до " + maxBatchSize + " сообщений\"}")
+                    .build();
+        }
+
+        List<MessageDTO.CreateMessage> messages = batch.messages;
+        Set<Long> recipientIds = new HashSet<>();
+        for (MessageDTO.CreateMessage message : messages) {
+            if (message != null && message.recipientId != null) {
+                recipientIds.add(message.recipientId);
+            }
+        }
+        Map<Long, String> recipientUsernames = userRepository.findActiveUsernames(recipientIds);
+
+        // Повторы: clientMessageId, уже отправленные раньше, одним запросом
+        Set<String> clientMessageIds = new HashSet<>();
+        for (MessageDTO.CreateMessage message : messages) {
+            if (message != null && message.clientMessageId != null && ClientMessageIdCache.isValid(message.clientMessageId)) {
+                clientMessageIds.add(message.clientMessageId);
+            }
+        }
+        Map<String, MessageDTO.MessageResponse> sentEarlier = new HashMap<>();
+        for (Message message : messageRepository.findByClientMessageIds(sender.id, clientMessageIds)) {
+            sentEarlier.put(message.clientMessageId, MessageDTO.MessageResponse.from(message));
+        }
+
+        MessageDTO.BatchItemResult[] results = new MessageDTO.BatchItemResult[messages.size()];
+        List<MessageDTO.CreateMessage> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        // Повтор clientMessageId внутри самой пачки получает результат первого вхождения
+        Map<String, Integer> firstIndexByClientId = new HashMap<>();
+        Map<Integer, Integer> duplicates = new HashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            MessageDTO.CreateMessage message = messages.get(i);
+            if (message == null || message.recipientId == null || message.content == null || message.content.isBlank()) {
+                results[i] = MessageDTO.BatchItemResult.failed(i, 400, "Не указан ID получателя или текст сообщения");
+            } else if (message.content.length() > MAX_CONTENT_LENGTH) {
+                results[i] = MessageDTO.BatchItemResult.failed(i, 400, "Текст сообщения длиннее " + MAX_CONTENT_LENGTH + " символов");
+            } else if (!recipientUsernames.containsKey(message.recipientId)) {
+                results[i] = MessageDTO.BatchItemResult.failed(i, 404, "Получатель не найден");
+            } else if (message.clientMessageId != null && !ClientMessageIdCache.isValid(message.clientMessageId)) {
+                results[i] = MessageDTO.BatchItemResult.failed(i, 400,
+                        "clientMessageId должен содержать от 1 до " + ClientMessageIdCache.MAX_CLIENT_MESSAGE_ID_LENGTH + " символов");
+            } else if (message.clientMessageId != null && sentEarlier.containsKey(message.clientMessageId)) {
+                results[i] = MessageDTO.BatchItemResult.replayed(i, sentEarlier.get(message.clientMessageId));
+            } else if (message.clientMessageId != null && firstIndexByClientId.containsKey(message.clientMessageId)) {
+                duplicates.put(i, firstIndexByClientId.get(message.clientMessageId));
+            } else {
+                if (message.clientMessageId != null) {
+                    firstIndexByClientId.put(message.clientMessageId, i);
+                }
+                accepted.add(message);
+                acceptedIndexes.add(i);
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            List<MessageDTO.MessageResponse> created = messageRepository.createAll(sender, accepted, recipientUsernames);
+            for (int i = 0; i < created.size(); i++) {
+                int index = acceptedIndexes.get(i);
+                results[index] = MessageDTO.BatchItemResult.created(index, created.get(i));
+            }
+        }
+        duplicates.forEach((index, first) -> results[index] = MessageDTO.BatchItemResult.replayed(index, results[first].message));
+
+        return Response.ok(List.of(results)).build();
+    }
+}
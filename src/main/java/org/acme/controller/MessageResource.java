@@ -1,8 +1,10 @@
 package org.acme.controller;
 
+import io.quarkus.arc.properties.UnlessBuildProperty;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
@@ -11,9 +13,14 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 import org.acme.dto.MessageDTO;
 import org.acme.model.Message;
-import org.acme.model.User;
 import org.acme.repository.MessageRepository;
+import org.acme.service.ClientMessageIdCache;
+import org.acme.service.MessageWaiters;
+import org.acme.service.UserCache;
+import org.acme.service.UserSnapshot;
+import org.acme.util.KeysetCursor;
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.headers.Header;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
@@ -21,30 +28,46 @@ import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 
 @Path("/messages")
+@RunOnVirtualThread
+@UnlessBuildProperty(name = "chat.messages.reactive", stringValue = "true", enableIfMissing = true)
 @Tag(name = "Messages", description = "Operations related to messages")
 public class MessageResource {
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500;
+
     @Inject
     MessageRepository messageRepository;
 
+    @Inject
+    UserCache userCache;
+
+    @Inject
+    MessageWaiters messageWaiters;
+
+    @Inject
+    ClientMessageIdCache clientMessageIds;
+
     @Inject
     SecurityContext securityContext;
 
     @POST
     @Path("/")
     @RolesAllowed("User")
-    @Transactional
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Отправка сообщения", description = "Отправляет сообщение от текущего пользователя указанному получателю. Требуется JWT-токен в заголовке Authorization.")
-    @APIResponse(responseCode = "201", description = "Сообщение успешно отправлено", content = @Content(schema = @Schema(implementation = MessageDTO.MessageResponse.class), example = "{\"id\": 123, \"senderId\": 456, \"senderUsername\": \"@Sender\", \"recipientId\": 789, \"recipientUsername\": \"@Recipient\", \"content\": \"Привет!\", \"timestamp\": \"2024-01-26T14:30:00\"}"))
+    @Operation(summary = "Отправка сообщения", description = "Отправляет сообщение от текущего пользователя указанному получателю. Требуется JWT-токен в заголовке Authorization. " +
+            "Повтор с тем же clientMessageId не создаёт дубликат, а возвращает исходное сообщение с заголовком " + ClientMessageIdCache.REPLAYED_HEADER + ": true.")
+    @APIResponse(responseCode = "201", description = "Сообщение успешно отправлено (или возвращено повторно)", headers = @Header(name = ClientMessageIdCache.REPLAYED_HEADER, description = "true, если сообщение с этим clientMessageId уже было отправлено раньше", schema = @Schema(type = SchemaType.BOOLEAN)), content = @Content(schema = @Schema(implementation = MessageDTO.MessageResponse.class), example = "{\"id\": 123, \"senderId\": 456, \"senderUsername\": \"@Sender\", \"recipientId\": 789, \"recipientUsername\": \"@Recipient\", \"content\": \"Привет!\", \"timestamp\": \"2024-01-26T14:30:00\"}"))
     @APIResponse(responseCode = "400", description = "Неверные данные запроса", content = @Content(example = "{\"error\": \"Не указан ID получателя или текст сообщения\"}"))
     @APIResponse(responseCode = "404", description = "Пользователь не найден", content = @Content(example = "{\"error\": \"Пользователь не найден\"}"))
     public Response sendMessage(@Valid MessageDTO.CreateMessage messageData, @Context SecurityContext securityContext) {
@@ -64,7 +87,7 @@ public class MessageResource {
                     .build();
         }
 
-        User sender = User.findById(senderId);
+        UserSnapshot sender = userCache.findById(senderId);
         if (sender == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("{\"error\": \"Отправитель не найден\"}")
@@ -77,26 +100,63 @@ public class MessageResource {
                     .build();
         }
 
-        User recipient = User.findById(messageData.recipientId);
+        UserSnapshot recipient = userCache.findById(messageData.recipientId);
         if (recipient == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("{\"error\": \"Получатель не найден\"}")
                     .build();
         }
 
-        Message message = messageRepository.create(sender, recipient, messageData.content);
+        String clientMessageId = messageData.clientMessageId;
+        if (clientMessageId != null) {
+            if (!ClientMessageIdCache.isValid(clientMessageId)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"clientMessageId должен содержать от 1 до " + ClientMessageIdCache.MAX_CLIENT_MESSAGE_ID_LENGTH + " символов\"}")
+                        .build();
+            }
+            MessageDTO.MessageResponse original = findOriginal(senderId, clientMessageId);
+            if (original != null) {
+                return replayed(original);
+            }
+        }
 
-        MessageDTO.MessageResponse response = new MessageDTO.MessageResponse(
-                message.id,
-                sender.id,
-                sender.username,
-                recipient.id,
-                recipient.username,
-                message.content,
-                message.timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-        );
+        MessageDTO.MessageResponse message;
+        try {
+            message = QuarkusTransaction.requiringNew().call(() -> messageRepository.create(sender, recipient, messageData.content, clientMessageId));
+        } catch (RuntimeException e) {
+            // Параллельный повтор с тем же clientMessageId закоммитил сообщение первым
+            MessageDTO.MessageResponse original = clientMessageId != null && MessageRepository.isDuplicateClientMessageId(e)
+                    ? findOriginal(senderId, clientMessageId)
+                    : null;
+            if (original == null) {
+                throw e;
+            }
+            return replayed(original);
+        }
+        clientMessageIds.remember(senderId, clientMessageId, message);
+
+        return Response.status(Response.Status.CREATED).entity(message).build();
+    }
 
-        return Response.status(Response.Status.CREATED).entity(response).build();
+    private MessageDTO.MessageResponse findOriginal(Long senderId, String clientMessageId) {
+        MessageDTO.MessageResponse cached = clientMessageIds.find(senderId, clientMessageId);
+        if (cached != null) {
+            return cached;
+        }
+        Message stored = messageRepository.findByClientMessageId(senderId, clientMessageId);
+        if (stored == null) {
+            return null;
+        }
+        MessageDTO.MessageResponse original = MessageDTO.MessageResponse.from(stored);
+        clientMessageIds.remember(senderId, clientMessageId, original);
+        return original;
+    }
+
+    private static Response replayed(MessageDTO.MessageResponse original) {
+        return Response.status(Response.Status.CREATED)
+                .header(ClientMessageIdCache.REPLAYED_HEADER, true)
+                .entity(original)
+                .build();
     }
 
     @GET
@@ -104,10 +164,14 @@ public class MessageResource {
     @RolesAllowed("User")
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(summary = "Получение сообщений",
-            description = "Получает сообщения для текущего пользователя. Можно фильтровать по переписке с конкретным пользователем или с определенной временной метки.")
+            description = "Получает страницу сообщений текущего пользователя в хронологическом порядке. Можно фильтровать по переписке с конкретным пользователем или с определенной временной метки. " +
+                    "Если есть следующая страница, её курсор возвращается в заголовке X-Next-Cursor; передайте его в параметре 'cursor'. " +
+                    "direction=backward начинает с самых новых сообщений и листает к старым. " +
+                    "С параметром wait (например, wait=30s, не больше 60s) пустой ответ откладывается, пока не придёт новое сообщение или не истечёт время.")
     @APIResponse(
             responseCode = "200",
             description = "Список сообщений",
+            headers = @Header(name = KeysetCursor.HEADER, description = "Курсор следующей страницы; отсутствует на последней странице", schema = @Schema(type = SchemaType.STRING)),
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(
@@ -117,7 +181,7 @@ public class MessageResource {
                     example = "[{\"id\": 123, \"senderId\": 456, \"senderUsername\": \"@Sender\", \"recipientId\": 789, \"recipientUsername\": \"@Recipient\", \"content\": \"Привет!\", \"timestamp\": \"2024-01-26T14:30:00\"}, {\"id\": 456, \"senderId\": 789, \"senderUsername\": \"@Recipient\", \"recipientId\": 456, \"recipientUsername\": \"@Sender\", \"content\": \"Привет в ответ!\", \"timestamp\": \"2024-01-26T14:35:00\"}]"
             )
     )
-    @APIResponse(responseCode = "400", description = "Неверный формат параметра 'since'", content = @Content(
+    @APIResponse(responseCode = "400", description = "Неверный формат параметров 'since', 'limit', 'cursor', 'direction' или 'wait'", content = @Content(
             example = "{\"error\": \"Неверный формат параметра 'since', используйте ISO 8601 (например, 2025-05-19T10:00:00)\"}"
     ))
     @APIResponse(responseCode = "404", description = "Пользователь не найден", content = @Content(
@@ -126,10 +190,14 @@ public class MessageResource {
     public Response getMessages(
             @QueryParam("with") Long withUserId,
             @QueryParam("since") @DefaultValue("1970-01-01T00:00:00") String since,
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("direction") @DefaultValue("forward") String direction,
+            @QueryParam("wait") String wait,
             @Context SecurityContext securityContext) {
 
         String currentUserId = securityContext.getUserPrincipal().getName();
-        User currentUser = User.findById(Long.parseLong(currentUserId));
+        UserSnapshot currentUser = userCache.findById(Long.parseLong(currentUserId));
         if (currentUser == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("{\"error\":\"Пользователь не найден\"}")
@@ -145,31 +213,80 @@ public class MessageResource {
                     .build();
         }
 
-        List<Message> messages;
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'limit' должен быть от 1 до " + MAX_PAGE_SIZE + "\"}")
+                    .build();
+        }
+
+        if (!"forward".equals(direction) && !"backward".equals(direction)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'direction' должен быть 'forward' или 'backward'\"}")
+                    .build();
+        }
+        boolean backward = "backward".equals(direction);
+
+        KeysetCursor pageCursor = null;
+        if (cursor != null) {
+            try {
+                pageCursor = KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Неверный курсор\"}")
+                        .build();
+            }
+        }
+
+        Duration waitFor;
+        try {
+            waitFor = messageWaiters.parseWait(wait);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'wait' должен быть от 0s до " + messageWaiters.maxWait().toSeconds() + "s, например 30s\"}")
+                    .build();
+        }
+
+        Long otherUserId = null;
         if (withUserId != null) {
-            User otherUser = User.findById(withUserId);
+            UserSnapshot otherUser = userCache.findById(withUserId);
             if (otherUser == null) {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity("{\"error\":\"User not found\"}")
                         .build();
             }
-            messages = messageRepository.findConversationSince(currentUser.id, otherUser.id, sinceTimestamp);
-        } else {
-            messages = messageRepository.findByParticipantSince(currentUser.id, sinceTimestamp);
+            otherUserId = otherUser.id;
+        }
+
+        // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница.
+        // При long polling пустой результат ждёт нового сообщения в виртуальном потоке и запрашивается заново
+        long deadline = System.nanoTime() + waitFor.toNanos();
+        List<Message> messages;
+        while (true) {
+            try (MessageWaiters.Waiter waiter = waitFor.isZero() ? null : messageWaiters.register(currentUser.id)) {
+                messages = messageRepository.findPage(currentUser.id, otherUserId, sinceTimestamp, pageCursor, backward, limit + 1);
+                long remaining = deadline - System.nanoTime();
+                if (waiter == null || !messages.isEmpty() || remaining <= 0 || !waiter.await(Duration.ofNanos(remaining))) {
+                    break;
+                }
+            }
+        }
+        boolean hasMore = messages.size() > limit;
+        if (hasMore) {
+            messages = messages.subList(0, limit);
         }
 
         List<MessageDTO.MessageResponse> response = messages.stream()
-                .map(m -> new MessageDTO.MessageResponse(
-                        m.id,
-                        m.sender.id,
-                        m.sender.username,
-                        m.recipient.id,
-                        m.recipient.username,
-                        m.content,
-                        m.timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                ))
+                .map(MessageDTO.MessageResponse::from)
                 .collect(Collectors.toList());
+        if (backward) {
+            Collections.reverse(response);
+        }
 
-        return Response.ok(response).build();
+        Response.ResponseBuilder builder = Response.ok(response);
+        if (hasMore) {
+            Message last = messages.get(messages.size() - 1);
+            builder.header(KeysetCursor.HEADER, KeysetCursor.of(last.timestamp, last.id).encode());
+        }
+        return builder.build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package org.acme.controller;
+
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import org.acme.dto.MessageDTO;
+import org.acme.repository.MessageRepository;
+import org.acme.service.UserCache;
+import org.acme.service.UserSnapshot;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+/**
+ * Отдельный ресурс, чтобы поиск был доступен и при {@code chat.messages.reactive=true}.
+ */
+@Path("/messages/search")
+@RunOnVirtualThread
+@Tag(name = "Messages", description = "Operations related to messages")
+public class MessageSearchResource {
+
+    static final int DEFAULT_SEARCH_LIMIT = 20;
+    static final int MAX_SEARCH_LIMIT = 50;
+    static final int MAX_QUERY_LENGTH = 200;
+
+    /**
+     * Результаты ранжируются целиком на каждой странице, поэтому глубина выдачи ограничена.
+     */
+    static final int MAX_SEARCH_DEPTH = 1000;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    UserCache userCache;
+
+    @GET
+    @RolesAllowed("User")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Поиск по сообщениям",
+            description = "Ищет по тексту сообщений, которые текущий пользователь отправил или получил (с параметром 'with' — только в переписке с этим пользователем). " +
+                    "Запрос в синтаксисе поисковика: слова, \"точная фраза\", -исключение, or. Слова сравниваются по основе, регистр не важен. " +
+                    "Результаты идут от более релевантных к менее релевантным, страницами по 'limit'; страница короче 'limit' — последняя. " +
+                    "Выдача ограничена " + MAX_SEARCH_DEPTH + " результатами.")
+    @APIResponse(responseCode = "200", description = "Найденные сообщения с подсветкой совпадений", content = @Content(
+            mediaType = MediaType.APPLICATION_JSON,
+            schema = @Schema(implementation = MessageDTO.SearchResult.class, type = SchemaType.ARRAY),
+            example = "[{\"message\": {\"id\": 123, \"senderId\": 456, \"senderUsername\": \"@Sender\", \"recipientId\": 789, \"recipientUsername\": \"@Recipient\", \"content\": \"Встречаемся завтра у офиса\", \"timestamp\": \"2024-01-26T14:30:00\"}, " +
+                    "\"highlight\": \"Встречаемся завтра у <mark>офиса</mark>\"}]"))
+    @APIResponse(responseCode = "400", description = "Не указан или слишком длинный запрос, неверные 'page' или 'limit'", content = @Content(example = "{\"error\": \"Параметр 'q' обязателен\"}"))
+    @APIResponse(responseCode = "404", description = "Пользователь не найден", content = @Content(example = "{\"error\": \"Пользователь не найден\"}"))
+    public Response searchMessages(
+            @QueryParam("q") String query,
+            @QueryParam("with") Long withUserId,
+            @QueryParam("page") @DefaultValue("0") int page,
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_SEARCH_LIMIT) int limit,
+            @Context SecurityContext securityContext) {
+        UserSnapshot currentUser = userCache.findById(Long.parseLong(securityContext.getUserPrincipal().getName()));
+        if (currentUser == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\":\"Пользователь не найден\"}")
+                    .build();
+        }
+        if (query == null || query.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'q' обязателен\"}")
+                    .build();
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'q' не должен превышать " + MAX_QUERY_LENGTH + " символов\"}")
+                    .build();
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'limit' должен быть от 1 до " + MAX_SEARCH_LIMIT + "\"}")
+                    .build();
+        }
+        if (page < 0 || (long) (page + 1) * limit > MAX_SEARCH_DEPTH) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'page' должен быть от 0, поиск возвращает не больше " + MAX_SEARCH_DEPTH + " результатов\"}")
+                    .build();
+        }
+
+        Long otherUserId = null;
+        if (withUserId != null) {
+            UserSnapshot otherUser = userCache.findById(withUserId);
+            if (otherUser == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity("{\"error\":\"Пользователь не найден\"}")
+                        .build();
+            }
+            otherUserId = otherUser.id;
+        }
+
+        return Response.ok(messageRepository.search(currentUser.id, otherUserId, query, page * limit, limit)).build();
+    }
+}
@@ -0,0 +1,89 @@
+package org.acme.controller;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.websockets.next.OnClose;
+import io.quarkus.websockets.next.OnOpen;
+import io.quarkus.websockets.next.WebSocket;
+import io.quarkus.websockets.next.WebSocketConnection;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import org.acme.dto.MessageDTO;
+import org.acme.model.Message;
+import org.acme.repository.MessageRepository;
+import org.acme.service.MessageSessionRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+
+/**
+ * Поток новых сообщений текущего пользователя. Аутентификация выполняется при HTTP upgrade тем же JWT,
+ * что и для REST: заголовок {@code Authorization: Bearer ...} или, для браузеров, подпротокол
+ * {@code quarkus-http-upgrade#Authorization#Bearer ...}.
+ * <p>
+ * После разрыва клиент переподключается с {@code ?after=<id последнего полученного сообщения>} и получает
+ * пропущенные сообщения (не более {@code chat.websocket.replay-limit}). Если пропущено больше, соединение
+ * закрывается с кодом 4000 и клиент догружает историю через {@code GET /messages}.
+ */
+@WebSocket(path = "/messages/stream")
+@RolesAllowed("User")
+public class MessageStreamSocket {
+
+    @Inject
+    SecurityIdentity identity;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    MessageSessionRegistry registry;
+
+    @ConfigProperty(name = "chat.websocket.replay-limit", defaultValue = "500")
+    int replayLimit;
+
+    @OnOpen
+    public void onOpen(WebSocketConnection connection) {
+        Long userId = Long.parseLong(identity.getPrincipal().getName());
+        // Регистрируемся до чтения пропущенного, чтобы не потерять сообщения, закоммиченные между запросом и подпиской.
+        // Возможные дубликаты клиент отбрасывает по id.
+        MessageSessionRegistry.Subscriber subscriber = registry.register(userId, connection);
+
+        Long afterId = parseAfter(connection.handshakeRequest().query());
+        if (afterId == null) {
+            subscriber.replay(List.of());
+            return;
+        }
+        List<MessageDTO.MessageResponse> missed = QuarkusTransaction.requiringNew().call(() ->
+                messageRepository.findByParticipantAfter(userId, afterId, replayLimit + 1)
+                        .stream()
+                        .map(MessageDTO.MessageResponse::from)
+                        .toList());
+        if (missed.size() > replayLimit) {
+            connection.closeAndAwait(MessageSessionRegistry.RESYNC_REQUIRED);
+            return;
+        }
+        // Пропущенное отправляется в обход очереди подписчика: replay-limit может быть больше send-queue-size
+        subscriber.replay(missed);
+    }
+
+    @OnClose
+    public void onClose(WebSocketConnection connection) {
+        registry.unregister(Long.parseLong(identity.getPrincipal().getName()), connection);
+    }
+
+    private static Long parseAfter(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("after=")) {
+                try {
+                    return Long.parseLong(pair.substring("after=".length()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
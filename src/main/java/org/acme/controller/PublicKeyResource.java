@@ -6,34 +6,38 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.acme.util.JwtSigner;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
 
 @Path("/public-key")
 @Tag(name = "Публичный ключ", description = "Эндпоинт для получения публичного ключа для проверки JWT")
 public class PublicKeyResource {
 
+    @ConfigProperty(name = "mp.jwt.verify.publickey.location")
+    String publicKeyLocation;
+
     @GET
     @PermitAll
     @Produces(MediaType.TEXT_PLAIN)
-    @Operation(summary = "Получить публичный ключ", description = "Возвращает публичный ключ в формате PEM для проверки подписи JWT-токенов")
+    @Operation(summary = "Получить публичный ключ", description = "Возвращает публичный ключ в формате PEM для проверки подписи JWT-токенов (RSA для RS256, EC P-256 для ES256)")
     @APIResponse(responseCode = "200", description = "Публичный ключ в формате PEM")
     @APIResponse(responseCode = "500", description = "Ошибка чтения ключа")
     public Response getPublicKey() {
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("publicKey.pem")) {
-            if (is == null) {
-                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                        .entity("{\"error\":\"Публичный ключ не найден\"}")
-                        .type(MediaType.APPLICATION_JSON)
-                        .build();
-            }
-            String publicKey = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            String publicKey = new String(JwtSigner.readResource(publicKeyLocation), StandardCharsets.UTF_8);
             return Response.ok(publicKey).build();
+        } catch (NoSuchFileException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\":\"Публичный ключ не найден\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
         } catch (IOException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\":\"Ошибка чтения публичного ключа: " + e.getMessage() + "\"}")
@@ -0,0 +1,279 @@
+package org.acme.controller;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import org.acme.dto.MessageDTO;
+import org.acme.repository.ReactiveMessageRepository;
+import org.acme.service.ClientMessageIdCache;
+import org.acme.service.MessageWaiters;
+import org.acme.util.KeysetCursor;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.headers.Header;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+import static org.acme.controller.MessageResource.DEFAULT_PAGE_SIZE;
+import static org.acme.controller.MessageResource.MAX_PAGE_SIZE;
+
+/**
+ * Неблокирующая реализация {@link MessageResource}: те же пути, параметры, ответы и тексты ошибок,
+ * но запросы выполняются на event loop через {@link ReactiveMessageRepository}.
+ * Включается при сборке свойством {@code chat.messages.reactive=true}, блокирующая версия при этом отключается.
+ */
+@Path("/messages")
+@IfBuildProperty(name = "chat.messages.reactive", stringValue = "true")
+@Tag(name = "Messages", description = "Operations related to messages")
+public class ReactiveMessageResource {
+
+    @Inject
+    ReactiveMessageRepository messageRepository;
+
+    @Inject
+    MessageWaiters messageWaiters;
+
+    @Inject
+    ClientMessageIdCache clientMessageIds;
+
+    @POST
+    @Path("/")
+    @RolesAllowed("User")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Отправка сообщения", description = "Отправляет сообщение от текущего пользователя указанному получателю. Требуется JWT-токен в заголовке Authorization. " +
+            "Повтор с тем же clientMessageId не создаёт дубликат, а возвращает исходное сообщение с заголовком " + ClientMessageIdCache.REPLAYED_HEADER + ": true.")
+    @APIResponse(responseCode = "201", description = "Сообщение успешно отправлено (или возвращено повторно)", headers = @Header(name = ClientMessageIdCache.REPLAYED_HEADER, description = "true, если сообщение с этим clientMessageId уже было отправлено раньше", schema = @Schema(type = SchemaType.BOOLEAN)), content = @Content(schema = @Schema(implementation = MessageDTO.MessageResponse.class), example = "{\"id\": 123, \"senderId\": 456, \"senderUsername\": \"@Sender\", \"recipientId\": 789, \"recipientUsername\": \"@Recipient\", \"content\": \"Привет!\", \"timestamp\": \"2024-01-26T14:30:00\"}"))
+    @APIResponse(responseCode = "400", description = "Неверные данные запроса", content = @Content(example = "{\"error\": \"Не указан ID получателя или текст сообщения\"}"))
+    @APIResponse(responseCode = "404", description = "Пользователь не найден", content = @Content(example = "{\"error\": \"Пользователь не найден\"}"))
+    public Uni<Response> sendMessage(@Valid MessageDTO.CreateMessage messageData, @Context SecurityContext securityContext) {
+        String currentUserId = securityContext.getUserPrincipal().getName();
+        if (currentUserId == null || currentUserId.isBlank()) {
+            return Uni.createFrom().item(Response.status(Response.Status.UNAUTHORIZED)
+                    .entity("{\"error\": \"Невалидный JWT-токен: отсутствует ID пользователя\"}")
+                    .build());
+        }
+
+        Long senderId;
+        try {
+            senderId = Long.parseLong(currentUserId);
+        } catch (NumberFormatException e) {
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Невалидный ID пользователя в токене\"}")
+                    .build());
+        }
+
+        boolean validBody = messageData.recipientId != null && messageData.content != null && !messageData.content.isBlank();
+        // Отправителя и получателя проверяем одним запросом, ошибки — в том же порядке, что и в блокирующей версии
+        Long[] participants = validBody ? new Long[]{senderId, messageData.recipientId} : new Long[]{senderId};
+        return messageRepository.findActiveUsernames(participants).flatMap(usernames -> {
+            if (!usernames.containsKey(senderId)) {
+                return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                        .entity("{\"error\": \"Отправитель не найден\"}")
+                        .build());
+            }
+
+            if (!validBody) {
+                return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Не указан ID получателя или текст сообщения\"}")
+                        .build());
+            }
+
+            if (!usernames.containsKey(messageData.recipientId)) {
+                return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                        .entity("{\"error\": \"Получатель не найден\"}")
+                        .build());
+            }
+
+            String clientMessageId = messageData.clientMessageId;
+            if (clientMessageId != null) {
+                if (!ClientMessageIdCache.isValid(clientMessageId)) {
+                    return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                            .entity("{\"error\": \"clientMessageId должен содержать от 1 до " + ClientMessageIdCache.MAX_CLIENT_MESSAGE_ID_LENGTH + " символов\"}")
+                            .build());
+                }
+                MessageDTO.MessageResponse cached = clientMessageIds.find(senderId, clientMessageId);
+                if (cached != null) {
+                    return Uni.createFrom().item(replayed(cached));
+                }
+            }
+
+            // Без предварительного SELECT: повтор отсекает ON CONFLICT, и только тогда читаем исходное сообщение
+            return messageRepository.create(senderId, usernames.get(senderId), messageData.recipientId,
+                            usernames.get(messageData.recipientId), messageData.content, clientMessageId)
+                    .flatMap(message -> {
+                        if (message != null) {
+                            clientMessageIds.remember(senderId, clientMessageId, message);
+                            return Uni.createFrom().item(Response.status(Response.Status.CREATED).entity(message).build());
+                        }
+                        return messageRepository.findByClientMessageId(senderId, clientMessageId)
+                                .invoke(original -> clientMessageIds.remember(senderId, clientMessageId, original))
+                                .map(ReactiveMessageResource::replayed);
+                    });
+        });
+    }
+
+    private static Response replayed(MessageDTO.MessageResponse original) {
+        return Response.status(Response.Status.CREATED)
+                .header(ClientMessageIdCache.REPLAYED_HEADER, true)
+                .entity(original)
+                .build();
+    }
+
+    @GET
+    @Path("/")
+    @RolesAllowed("User")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Получение сообщений",
+            description = "Получает страницу сообщений текущего пользователя в хронологическом порядке. Можно фильтровать по переписке с конкретным пользователем или с определенной временной метки. " +
+                    "Если есть следующая страница, её курсор возвращается в заголовке X-Next-Cursor; передайте его в параметре 'cursor'. " +
+                    "direction=backward начинает с самых новых сообщений и листает к старым. " +
+                    "С параметром wait (например, wait=30s, не больше 60s) пустой ответ откладывается, пока не придёт новое сообщение или не истечёт время.")
+    @APIResponse(
+            responseCode = "200",
+            description = "Список сообщений",
+            headers = @Header(name = KeysetCursor.HEADER, description = "Курсор следующей страницы; отсутствует на последней странице", schema = @Schema(type = SchemaType.STRING)),
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(
+                            implementation = MessageDTO.MessageResponse.class,
+                            type = SchemaType.ARRAY
+                    ),
+                    example = "[{\"id\": 123, \"senderId\": 456, \"senderUsername\": \"@Sender\", \"recipientId\": 789, \"recipientUsername\": \"@Recipient\", \"content\": \"Привет!\", \"timestamp\": \"2024-01-26T14:30:00\"}, {\"id\": 456, \"senderId\": 789, \"senderUsername\": \"@Recipient\", \"recipientId\": 456, \"recipientUsername\": \"@Sender\", \"content\": \"Привет в ответ!\", \"timestamp\": \"2024-01-26T14:35:00\"}]"
+            )
+    )
+    @APIResponse(responseCode = "400", description = "Неверный формат параметров 'since', 'limit', 'cursor', 'direction' или 'wait'", content = @Content(
+            example = "{\"error\": \"Неверный формат параметра 'since', используйте ISO 8601 (например, 2025-05-19T10:00:00)\"}"
+    ))
+    @APIResponse(responseCode = "404", description = "Пользователь не найден", content = @Content(
+            example = "{\"error\": \"Пользователь не найден\"}"
+    ))
+    public Uni<Response> getMessages(
+            @QueryParam("with") Long withUserId,
+            @QueryParam("since") @DefaultValue("1970-01-01T00:00:00") String since,
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("direction") @DefaultValue("forward") String direction,
+            @QueryParam("wait") String wait,
+            @Context SecurityContext securityContext) {
+
+        Long currentUserId = Long.parseLong(securityContext.getUserPrincipal().getName());
+        Long[] participants = withUserId != null ? new Long[]{currentUserId, withUserId} : new Long[]{currentUserId};
+        return messageRepository.findActiveUsernames(participants).flatMap(usernames -> {
+            if (!usernames.containsKey(currentUserId)) {
+                return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                        .entity("{\"error\":\"Пользователь не найден\"}")
+                        .build());
+            }
+
+            LocalDateTime sinceTimestamp;
+            try {
+                sinceTimestamp = LocalDateTime.parse(since, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            } catch (Exception e) {
+                return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Invalid 'since' format, use ISO 8601 (e.g., 2025-05-19T10:00:00)\"}")
+                        .build());
+            }
+
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Параметр 'limit' должен быть от 1 до " + MAX_PAGE_SIZE + "\"}")
+                        .build());
+            }
+
+            if (!"forward".equals(direction) && !"backward".equals(direction)) {
+                return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Параметр 'direction' должен быть 'forward' или 'backward'\"}")
+                        .build());
+            }
+            boolean backward = "backward".equals(direction);
+
+            KeysetCursor pageCursor = null;
+            if (cursor != null) {
+                try {
+                    pageCursor = KeysetCursor.decode(cursor);
+                } catch (IllegalArgumentException e) {
+                    return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                            .entity("{\"error\":\"Неверный курсор\"}")
+                            .build());
+                }
+            }
+
+            Duration waitFor;
+            try {
+                waitFor = messageWaiters.parseWait(wait);
+            } catch (IllegalArgumentException e) {
+                return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Параметр 'wait' должен быть от 0s до " + messageWaiters.maxWait().toSeconds() + "s, например 30s\"}")
+                        .build());
+            }
+
+            if (withUserId != null && !usernames.containsKey(withUserId)) {
+                return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND)
+                        .entity("{\"error\":\"User not found\"}")
+                        .build());
+            }
+
+            // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница
+            Uni<List<MessageDTO.MessageResponse>> page = waitFor.isZero()
+                    ? messageRepository.findPage(currentUserId, withUserId, sinceTimestamp, pageCursor, backward, limit + 1)
+                    : poll(currentUserId, withUserId, sinceTimestamp, pageCursor, backward, limit + 1, System.nanoTime() + waitFor.toNanos());
+            return page
+                    .map(messages -> {
+                        boolean hasMore = messages.size() > limit;
+                        List<MessageDTO.MessageResponse> response = hasMore ? messages.subList(0, limit) : messages;
+
+                        Response.ResponseBuilder builder;
+                        if (hasMore) {
+                            MessageDTO.MessageResponse last = response.get(response.size() - 1);
+                            builder = Response.ok().header(KeysetCursor.HEADER,
+                                    KeysetCursor.of(LocalDateTime.parse(last.timestamp), last.id).encode());
+                        } else {
+                            builder = Response.ok();
+                        }
+                        if (backward) {
+                            Collections.reverse(response);
+                        }
+                        return builder.entity(response).build();
+                    });
+        });
+    }
+
+    /**
+     * Long polling: пустая страница ждёт сигнала {@link MessageWaiters} без занятого потока и запрашивается заново.
+     */
+    private Uni<List<MessageDTO.MessageResponse>> poll(Long userId, Long withUserId, LocalDateTime since, KeysetCursor cursor,
+                                                       boolean backward, int limit, long deadline) {
+        MessageWaiters.Waiter waiter = messageWaiters.register(userId);
+        return messageRepository.findPage(userId, withUserId, since, cursor, backward, limit)
+                .flatMap(messages -> {
+                    long remaining = deadline - System.nanoTime();
+                    if (!messages.isEmpty() || remaining <= 0) {
+                        return Uni.createFrom().item(messages);
+                    }
+                    return Uni.createFrom().completionStage(waiter.signal())
+                            .map(signaled -> true)
+                            .ifNoItem().after(Duration.ofNanos(remaining)).recoverWithItem(false)
+                            .invoke(waiter::close)
+                            .flatMap(signaled -> signaled
+                                    ? poll(userId, withUserId, since, cursor, backward, limit, deadline)
+                                    : Uni.createFrom().item(messages));
+                })
+                .eventually(waiter::close);
+    }
+}
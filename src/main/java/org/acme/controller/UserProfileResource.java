@@ -1,9 +1,9 @@
 package org.acme.controller;
 
-import io.quarkus.elytron.security.common.BcryptUtil;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
@@ -12,6 +12,9 @@ import jakarta.ws.rs.core.SecurityContext;
 import org.acme.dto.TokenResponseDTO;
 import org.acme.dto.UserProfileDTO;
 import org.acme.model.User;
+import org.acme.service.PasswordHasher;
+import org.acme.service.UserCache;
+import org.acme.service.UserSnapshot;
 import org.acme.util.TokenUtils;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
@@ -21,12 +24,19 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 @Path("/profile")
+@RunOnVirtualThread
 @Tag(name = "Профиль пользователя", description = "Операции для управления профилем пользователя")
 public class UserProfileResource {
 
     @Inject
     TokenUtils tokenUtils;
 
+    @Inject
+    PasswordHasher passwordHasher;
+
+    @Inject
+    UserCache userCache;
+
     @GET
     @Path("/{userId}")
     @RolesAllowed("User")
@@ -35,7 +45,7 @@ public class UserProfileResource {
     @APIResponse(responseCode = "200", description = "Профиль пользователя", content = @Content(schema = @Schema(implementation = UserProfileDTO.class), example = "{\"id\": 1, \"username\": \"@User123\", \"email\": \"user@example.com\", \"birthdate\": \"1990-01-01\", \"firstName\": \"John\", \"lastName\": \"Doe\", \"photoUrl\": \"https://example.com/photo.jpg\"}"))
     @APIResponse(responseCode = "404", description = "Пользователь не найден", content = @Content(example = "{\"error\": \"Пользователь не найден\"}"))
     public Response getUserProfile(@PathParam("userId") Long userId) {
-        User user = User.findById(userId);
+        UserSnapshot user = userCache.findById(userId);
         if (user == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("{\"error\":\"Пользователь не найден\"}")
@@ -50,7 +60,6 @@ public class UserProfileResource {
     @RolesAllowed("User")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    @Transactional
     @Operation(summary = "Частичное обновление профиля", description = "Обновляет указанные поля профиля пользователя. Для email требуется пароль. Возвращает новые токены при обновлении email, username, firstName или lastName, иначе возвращает обновлённый профиль.")
     @APIResponse(responseCode = "200", description = "Профиль или токены успешно обновлены", content = {
             @Content(schema = @Schema(implementation = UserProfileDTO.class), example = "{\"id\": 1, \"username\": \"@User123\", \"email\": \"user@example.com\", \"birthdate\": \"1990-01-01\", \"firstName\": \"John\", \"lastName\": \"Doe\", \"photoUrl\": \"https://example.com/photo.jpg\"}", mediaType = MediaType.APPLICATION_JSON),
@@ -78,6 +87,8 @@ public class UserProfileResource {
                     .build();
         }
 
+        // Нужен хеш пароля, поэтому читаем базу, а не кеш. Сущность используется только для проверок:
+        // изменения применяются к строке, перечитанной под блокировкой в транзакции ниже
         User user = User.findById(userId);
         if (user == null) {
             return Response.status(Response.Status.UNAUTHORIZED)
@@ -96,7 +107,7 @@ public class UserProfileResource {
                         .type(MediaType.APPLICATION_JSON)
                         .build();
             }
-            if (!BcryptUtil.matches(patchProfileDTO.password, user.password)) {
+            if (!passwordHasher.matches(patchProfileDTO.password, user.password)) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity("{\"error\": \"Неверный пароль\"}")
                         .type(MediaType.APPLICATION_JSON)
@@ -108,7 +119,6 @@ public class UserProfileResource {
                         .type(MediaType.APPLICATION_JSON)
                         .build();
             }
-            user.email = patchProfileDTO.email;
             requiresTokenUpdate = true;
         }
 
@@ -126,7 +136,6 @@ public class UserProfileResource {
                         .type(MediaType.APPLICATION_JSON)
                         .build();
             }
-            user.username = patchProfileDTO.username;
             requiresTokenUpdate = true;
         }
 
@@ -138,7 +147,6 @@ public class UserProfileResource {
                         .type(MediaType.APPLICATION_JSON)
                         .build();
             }
-            user.firstName = patchProfileDTO.firstName;
             requiresTokenUpdate = true;
         }
 
@@ -150,7 +158,6 @@ public class UserProfileResource {
                         .type(MediaType.APPLICATION_JSON)
                         .build();
             }
-            user.lastName = patchProfileDTO.lastName;
             requiresTokenUpdate = true;
         }
 
@@ -162,7 +169,6 @@ public class UserProfileResource {
                         .type(MediaType.APPLICATION_JSON)
                         .build();
             }
-            user.photoUrl = patchProfileDTO.photoUrl;
         }
 
         // Проверка, что хотя бы одно поле указано
@@ -175,17 +181,49 @@ public class UserProfileResource {
                     .build();
         }
 
-        user.persist();
+        // Все проверки, включая BCrypt, выполнены вне транзакции. Короткая транзакция перечитывает строку под
+        // блокировкой и меняет только переданные поля: параллельные деактивация, смена пароля и другой PATCH
+        // не затираются, а profileVersion растёт на каждый PATCH
+        User updated = QuarkusTransaction.requiringNew().call(() -> {
+            User current = User.findByIdForUpdate(userId);
+            if (current == null) {
+                return null;
+            }
+            if (patchProfileDTO.email != null) {
+                current.email = patchProfileDTO.email;
+            }
+            if (patchProfileDTO.username != null) {
+                current.username = patchProfileDTO.username;
+            }
+            if (patchProfileDTO.firstName != null) {
+                current.firstName = patchProfileDTO.firstName;
+            }
+            if (patchProfileDTO.lastName != null) {
+                current.lastName = patchProfileDTO.lastName;
+            }
+            if (patchProfileDTO.photoUrl != null) {
+                current.photoUrl = patchProfileDTO.photoUrl;
+            }
+            current.profileVersion++;
+            return current;
+        });
+        userCache.invalidate(userId);
+        if (updated == null) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity("{\"error\": \"Пользователь не найден\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
 
         // Возвращаем токены, если обновлялись email, username, firstName или lastName
         if (requiresTokenUpdate) {
-            String accessToken = tokenUtils.generateAccessToken(user);
-            String refreshToken = tokenUtils.generateRefreshToken(user);
+            String accessToken = tokenUtils.generateAccessToken(updated);
+            String refreshToken = tokenUtils.generateRefreshToken(updated);
             return Response.ok(new TokenResponseDTO(accessToken, refreshToken)).build();
         }
 
         // Иначе возвращаем обновлённый профиль
-        UserProfileDTO profile = new UserProfileDTO(user.id, user.username, user.email, user.birthdate, user.firstName, user.lastName, user.photoUrl);
+        UserProfileDTO profile = new UserProfileDTO(updated.id, updated.username, updated.email, updated.birthdate, updated.firstName, updated.lastName, updated.photoUrl);
         return Response.ok(profile).build();
     }
 
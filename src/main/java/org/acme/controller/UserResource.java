@@ -1,35 +1,148 @@
 package org.acme.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.acme.dto.ContactDTO;
-import org.acme.model.User;
+import org.acme.repository.UserRepository;
+import org.acme.util.KeysetCursor;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.headers.Header;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/users")
 @Tag(name = "Пользователи", description = "Операции для получения списка всех пользователей")
 public class UserResource {
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500;
+    static final int STREAM_PAGE_SIZE = 500;
+    static final int DEFAULT_SEARCH_LIMIT = 20;
+    static final int MAX_SEARCH_LIMIT = 50;
+    static final int MAX_QUERY_LENGTH = 100;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @GET
+    @RolesAllowed("User")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Получить список пользователей", description = "Возвращает страницу активных пользователей для выбора контакта, начиная с новых. " +
+            "Если есть следующая страница, её курсор возвращается в заголовке X-Next-Cursor; передайте его в параметре 'cursor'.")
+    @APIResponse(responseCode = "200", description = "Страница пользователей",
+            headers = @Header(name = KeysetCursor.HEADER, description = "Курсор следующей страницы; отсутствует на последней странице", schema = @Schema(type = SchemaType.STRING)),
+            content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ContactDTO.class, type = SchemaType.ARRAY), example = "[{\"id\": 1, \"username\": \"@User123\", \"firstName\": \"John\", \"lastName\": \"Doe\", \"photoUrl\": \"https://example.com/photo.jpg\"}]"))
+    @APIResponse(responseCode = "400", description = "Неверные параметры пагинации", content = @Content(example = "{\"error\": \"Неверный курсор\"}"))
+    public Response getAllUsers(
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit,
+            @QueryParam("cursor") String cursor) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'limit' должен быть от 1 до " + MAX_PAGE_SIZE + "\"}")
+                    .build();
+        }
+
+        KeysetCursor pageCursor = null;
+        if (cursor != null) {
+            try {
+                pageCursor = KeysetCursor.decodeId(cursor);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\":\"Неверный курсор\"}")
+                        .build();
+            }
+        }
+
+        List<ContactDTO> users = userRepository.findContactPage(pageCursor, limit + 1);
+        boolean hasMore = users.size() > limit;
+        if (hasMore) {
+            users = users.subList(0, limit);
+        }
+
+        Response.ResponseBuilder builder = Response.ok(users);
+        if (hasMore) {
+            builder.header(KeysetCursor.HEADER, KeysetCursor.ofId(users.get(users.size() - 1).id).encode());
+        }
+        return builder.build();
+    }
+
+    @GET
+    @Path("/search")
+    @RolesAllowed("User")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Поиск пользователей", description = "Ищет активных пользователей по username, имени и фамилии: сначала точные совпадения, затем совпадения по началу, затем похожие (с опечатками). " +
+            "Запросы короче " + UserRepository.SEARCH_MIN_FUZZY_LENGTH + " символов ищут только по началу username.")
+    @APIResponse(responseCode = "200", description = "Найденные пользователи в порядке релевантности", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ContactDTO.class, type = SchemaType.ARRAY), example = "[{\"id\": 1, \"username\": \"@User123\", \"firstName\": \"John\", \"lastName\": \"Doe\", \"photoUrl\": \"https://example.com/photo.jpg\"}]"))
+    @APIResponse(responseCode = "400", description = "Не указан или слишком длинный запрос, неверный limit", content = @Content(example = "{\"error\": \"Параметр 'q' обязателен\"}"))
+    public Response searchUsers(
+            @QueryParam("q") String query,
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_SEARCH_LIMIT) int limit) {
+        if (query == null || query.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'q' обязателен\"}")
+                    .build();
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'q' не должен превышать " + MAX_QUERY_LENGTH + " символов\"}")
+                    .build();
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Параметр 'limit' должен быть от 1 до " + MAX_SEARCH_LIMIT + "\"}")
+                    .build();
+        }
+        return Response.ok(userRepository.search(query, limit)).build();
+    }
+
     @GET
+    @Path("/stream")
     @RolesAllowed("User")
     @Produces(MediaType.APPLICATION_JSON)
-    @Operation(summary = "Получить список всех пользователей", description = "Возвращает список всех зарегистрированных пользователей для выбора контакта.")
-    @APIResponse(responseCode = "200", description = "Список всех пользователей", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ContactDTO.class, type = SchemaType.ARRAY), example = "[{\"id\": 1, \"username\": \"@User123\", \"firstName\": \"John\", \"lastName\": \"Doe\", \"photoUrl\": \"https://example.com/photo.jpg\"}]"))
-    public List<ContactDTO> getAllUsers() {
-        return User.<User>findAll()
-                .stream()
-                .map(user -> new ContactDTO(user.id, user.username, user.firstName, user.lastName, user.photoUrl))
-                .collect(Collectors.toList());
+    @Operation(summary = "Выгрузить всех пользователей потоком", description = "Возвращает всех активных пользователей одним JSON-массивом в порядке GET /users. " +
+            "Строки читаются страницами и пишутся в ответ (chunked), поэтому объём памяти сервера не зависит от числа пользователей.")
+    @APIResponse(responseCode = "200", description = "Все активные пользователи", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ContactDTO.class, type = SchemaType.ARRAY)))
+    public Response streamAllUsers() {
+        StreamingOutput body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                // Каждая страница — отдельная короткая транзакция: медленный клиент не держит соединение с БД,
+                // пока читает ответ. Страницы идут тем же keyset-запросом, что и GET /users
+                KeysetCursor pageCursor = null;
+                List<ContactDTO> page;
+                do {
+                    KeysetCursor after = pageCursor;
+                    page = QuarkusTransaction.requiringNew().call(() -> userRepository.findContactPage(after, STREAM_PAGE_SIZE));
+                    for (ContactDTO user : page) {
+                        generator.writeObject(user);
+                    }
+                    generator.flush();
+                    if (!page.isEmpty()) {
+                        pageCursor = KeysetCursor.ofId(page.get(page.size() - 1).id);
+                    }
+                } while (page.size() == STREAM_PAGE_SIZE);
+                generator.writeEndArray();
+            }
+        };
+        return Response.ok(body).build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package org.acme.dto;
+
+import org.acme.model.Conversation;
+import org.acme.model.User;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.format.DateTimeFormatter;
+
+@Schema(description = "Диалог в списке чатов")
+public class ConversationDTO {
+
+    @Schema(description = "ID собеседника", examples = "2")
+    public Long userId;
+
+    @Schema(description = "Имя пользователя собеседника, начинающееся с @", examples = "@User456")
+    public String username;
+
+    @Schema(description = "Имя собеседника", examples = "Jane", nullable = true)
+    public String firstName;
+
+    @Schema(description = "Фамилия собеседника", examples = "Smith", nullable = true)
+    public String lastName;
+
+    @Schema(description = "URL фотографии собеседника", examples = "https://example.com/photo2.jpg", nullable = true)
+    public String photoUrl;
+
+    @Schema(description = "ID последнего сообщения", examples = "123")
+    public Long lastMessageId;
+
+    @Schema(description = "ID отправителя последнего сообщения", examples = "2")
+    public Long lastMessageSenderId;
+
+    @Schema(description = "Первые 100 символов последнего сообщения", examples = "Привет!")
+    public String lastMessagePreview;
+
+    @Schema(description = "Время последнего сообщения в формате ISO 8601", format = "date-time", examples = "2024-01-26T14:30:00")
+    public String lastMessageTimestamp;
+
+    @Schema(description = "Количество непрочитанных сообщений", examples = "3")
+    public int unreadCount;
+
+    public static ConversationDTO from(Conversation conversation, Long currentUserId) {
+        boolean currentIsA = conversation.userA.id.equals(currentUserId);
+        User other = currentIsA ? conversation.userB : conversation.userA;
+
+        ConversationDTO dto = new ConversationDTO();
+        dto.userId = other.id;
+        dto.username = other.username;
+        dto.firstName = other.firstName;
+        dto.lastName = other.lastName;
+        dto.photoUrl = other.photoUrl;
+        dto.lastMessageId = conversation.lastMessageId;
+        dto.lastMessageSenderId = conversation.lastSenderId;
+        dto.lastMessagePreview = conversation.lastMessagePreview;
+        dto.lastMessageTimestamp = conversation.lastMessageAt != null
+                ? conversation.lastMessageAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                : null;
+        dto.unreadCount = currentIsA ? conversation.unreadA : conversation.unreadB;
+        return dto;
+    }
+}
@@ -1,7 +1,12 @@
 package org.acme.dto;
 
+import jakarta.validation.constraints.Size;
+import org.acme.model.Message;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
 public class MessageDTO {
 
     @Schema(description = "Request for creating a new message")
@@ -10,7 +15,12 @@ public class MessageDTO {
 
         public Long recipientId;
         @Schema(description = "Message content", required = true, minLength = 1, maxLength = 2000, examples = {"Hello there!", "Can we meet tomorrow?"}, defaultValue = "Hi there!")
+        @Size(max = 2000, message = "Текст сообщения длиннее 2000 символов")
         public String content;
+
+        @Schema(description = "Optional client-generated id (up to 64 characters). Retrying a send with the same id returns the original message instead of creating a duplicate",
+                maxLength = 64, examples = {"6f1c2a9e-3b7d-4c55-9a0e-1d2f3c4b5a69"})
+        public String clientMessageId;
     }
 
     @Schema(description = "Message response")
@@ -52,5 +62,82 @@ public class MessageDTO {
             this.content = content;
             this.timestamp = timestamp;
         }
+
+        public static MessageResponse from(Message message) {
+            return from(message, message.sender.username, message.recipient.username);
+        }
+
+        public static MessageResponse from(Message message, String senderUsername, String recipientUsername) {
+            return new MessageResponse(
+                    message.id,
+                    message.sender.id,
+                    senderUsername,
+                    message.recipient.id,
+                    recipientUsername,
+                    message.content,
+                    message.timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            );
+        }
+    }
+
+    @Schema(description = "Request for sending several messages at once")
+    public static class BatchRequest {
+        @Schema(description = "Messages to send, processed in order", required = true, minItems = 1, maxItems = 500)
+        public List<CreateMessage> messages;
+    }
+
+    @Schema(description = "Outcome of one message from a batch")
+    public static class BatchItemResult {
+        @Schema(description = "Position of the message in the request", examples = {"0", "1"}, defaultValue = "0")
+        public int index;
+
+        @Schema(description = "HTTP status the message would get from POST /messages: 201, 400 or 404", examples = {"201", "404"}, defaultValue = "201")
+        public int status;
+
+        @Schema(description = "Created message, present when status is 201")
+        public MessageResponse message;
+
+        @Schema(description = "True when the message was already sent earlier with the same clientMessageId and is returned again")
+        public boolean replayed;
+
+        @Schema(description = "Error description, present when status is not 201", examples = {"Получатель не найден"})
+        public String error;
+
+        public static BatchItemResult created(int index, MessageResponse message) {
+            BatchItemResult result = new BatchItemResult();
+            result.index = index;
+            result.status = 201;
+            result.message = message;
+            return result;
+        }
+
+        public static BatchItemResult replayed(int index, MessageResponse message) {
+            BatchItemResult result = created(index, message);
+            result.replayed = true;
+            return result;
+        }
+
+        public static BatchItemResult failed(int index, int status, String error) {
+            BatchItemResult result = new BatchItemResult();
+            result.index = index;
+            result.status = status;
+            result.error = error;
+            return result;
+        }
+    }
+
+    @Schema(description = "Message found by full-text search")
+    public static class SearchResult {
+        @Schema(description = "Found message")
+        public MessageResponse message;
+
+        @Schema(description = "Fragments of the message content with matched words wrapped in <mark></mark>. The rest of the text is HTML-escaped",
+                examples = {"Встречаемся &lt;завтра&gt; у <mark>офиса</mark>"})
+        public String highlight;
+
+        public SearchResult(MessageResponse message, String highlight) {
+            this.message = message;
+            this.highlight = highlight;
+        }
     }
-}
\ No newline at end of file
+}
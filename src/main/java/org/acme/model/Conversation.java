@@ -0,0 +1,38 @@
+package org.acme.model;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Диалог двух пользователей с денормализованным последним сообщением и счётчиками непрочитанного.
+ * Пара хранится упорядоченной: {@code userA.id < userB.id}. Строки создаются и обновляются только
+ * через {@link org.acme.repository.ConversationRepository#recordMessage}, в той же транзакции, что и сообщение.
+ */
+@Entity
+@Table(name = "conversations")
+public class Conversation extends PanacheEntity {
+
+    @ManyToOne
+    public User userA;
+
+    @ManyToOne
+    public User userB;
+
+    public Long lastMessageId;
+
+    public Long lastSenderId;
+
+    @Column(length = 100)
+    public String lastMessagePreview;
+
+    public LocalDateTime lastMessageAt;
+
+    public int unreadA; // Непрочитанные сообщения для userA
+
+    public int unreadB; // Непрочитанные сообщения для userB
+}
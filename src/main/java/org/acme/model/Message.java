@@ -1,6 +1,7 @@
 package org.acme.model;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.ManyToOne;
 
@@ -15,6 +16,13 @@ public class Message extends PanacheEntity {
     @ManyToOne
     public User recipient;
 
+    @Column(length = 2000)
     public String content;
     public LocalDateTime timestamp;
+
+    /**
+     * Необязательный id от клиента для безопасных повторов отправки; уникален в пределах отправителя.
+     */
+    @Column(length = 64)
+    public String clientMessageId;
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package org.acme.model;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 
@@ -9,11 +10,41 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "refresh_tokens")
 public class RefreshToken extends PanacheEntity {
-    public String token;
+
+    /**
+     * SHA-256 токена в hex (см. {@link org.acme.service.RefreshTokenStore#hash}); сам токен не хранится.
+     */
+    @Column(length = 64)
+    public String tokenHash;
     public Long userId;
     public LocalDateTime expiryDate;
 
-    public static RefreshToken findByToken(String token) {
-        return find("token", token).firstResult();
+    public static RefreshToken findByTokenHash(String tokenHash) {
+        return find("tokenHash", tokenHash).firstResult();
+    }
+
+    /**
+     * Удаляет до {@code batchSize} токенов, истёкших к {@code now}. Строки, которые держит другая транзакция
+     * (параллельная очистка на другом узле, refresh), пропускаются, а не ожидаются.
+     *
+     * @return число удалённых строк
+     */
+    public static int deleteExpired(LocalDateTime now, int batchSize) {
+        return getEntityManager().createNativeQuery("DELETE FROM refresh_tokens WHERE id IN (" +
+                        "SELECT id FROM refresh_tokens WHERE expiryDate < :now LIMIT :batchSize FOR UPDATE SKIP LOCKED)")
+                .setParameter("now", now)
+                .setParameter("batchSize", batchSize)
+                .executeUpdate();
+    }
+
+    /**
+     * Оставляет пользователю {@code keep} токенов с самым поздним сроком, остальные удаляет.
+     */
+    public static int deleteOldest(Long userId, int keep) {
+        return getEntityManager().createNativeQuery("DELETE FROM refresh_tokens WHERE id IN (" +
+                        "SELECT id FROM refresh_tokens WHERE userId = :userId ORDER BY expiryDate DESC, id DESC OFFSET :keep)")
+                .setParameter("userId", userId)
+                .setParameter("keep", keep)
+                .executeUpdate();
     }
-}
\ No newline at end of file
+}
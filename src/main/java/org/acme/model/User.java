@@ -1,19 +1,23 @@
 package org.acme.model;
 
-import io.quarkus.elytron.security.common.BcryptUtil;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import io.quarkus.security.jpa.Password;
 import io.quarkus.security.jpa.Roles;
 import io.quarkus.security.jpa.UserDefinition;
 import io.quarkus.security.jpa.Username;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Table;
 import jakarta.persistence.Column;
+import jakarta.persistence.LockModeType;
+import org.acme.service.UserCache;
+import org.acme.util.CachingJWTCallerPrincipalFactory;
 import java.util.Random;
 
 @Entity
 @Table(name = "app_users")
 @UserDefinition
+@EntityListeners({UserCache.EntityListener.class, CachingJWTCallerPrincipalFactory.EntityListener.class})
 public class User extends PanacheEntity {
 
     @Username
@@ -42,10 +46,20 @@ public class User extends PanacheEntity {
     @Column(nullable = false, columnDefinition = "boolean default true")
     public boolean active = true;
 
-    public static void add(String email, String password, String roles, String birthdate, String firstName, String lastName, String photoUrl) {
+    /**
+     * Растёт при каждом изменении профиля; попадает в компактный access-токен (claim {@code pv}).
+     */
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    public int profileVersion;
+
+    /**
+     * Создаёт пользователя. Пароль передаётся уже захешированным (см. {@link org.acme.service.PasswordHasher}),
+     * чтобы BCrypt не выполнялся внутри транзакции.
+     */
+    public static User add(String email, String passwordHash, String roles, String birthdate, String firstName, String lastName, String photoUrl) {
         User user = new User();
         user.email = email;
-        user.password = BcryptUtil.bcryptHash(password);
+        user.password = passwordHash;
         user.roles = roles;
         user.birthdate = birthdate;
         user.username = generateUniqueUsername();
@@ -54,6 +68,7 @@ public class User extends PanacheEntity {
         user.photoUrl = photoUrl;
         user.active = true;
         user.persist();
+        return user;
     }
 
     public static User findByEmail(String email) {
@@ -68,6 +83,14 @@ public class User extends PanacheEntity {
         return find("id = ?1 and active = true", id).firstResult();
     }
 
+    /**
+     * Активный пользователь с блокировкой строки до конца транзакции — для изменений, которые не должны
+     * затереть параллельные.
+     */
+    public static User findByIdForUpdate(Long id) {
+        return find("id = ?1 and active = true", id).withLock(LockModeType.PESSIMISTIC_WRITE).firstResult();
+    }
+
     public void deactivate() {
         this.active = false;
         this.persist();
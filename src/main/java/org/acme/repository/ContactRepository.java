@@ -1,20 +1,40 @@
 package org.acme.repository;
 
+import io.micrometer.core.annotation.Timed;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.TypedQuery;
+import org.acme.dto.ContactDTO;
 import org.acme.model.Contact;
-import org.acme.model.User;
+import org.acme.util.KeysetCursor;
 
 import java.util.List;
 
 @ApplicationScoped
 public class ContactRepository implements PanacheRepository<Contact> {
 
-    public List<Contact> findByOwner(Long ownerId) {
-        return find("owner.id = ?1", ownerId).list();
+    /**
+     * Контакты владельца одним запросом сразу в {@link ContactDTO}: без загрузки сущностей {@code Contact}
+     * и без отдельного SELECT пользователя на каждый контакт. Keyset-пагинация по id контакта,
+     * порядок совпадает с индексом uk_contact_owner_contact (owner_id, contact_id).
+     */
+    @Timed(MessageRepository.REPOSITORY_TIMER)
+    public List<ContactDTO> findPageByOwner(Long ownerId, KeysetCursor cursor, int limit) {
+        String query = "SELECT new org.acme.dto.ContactDTO(u.id, u.username, u.firstName, u.lastName, u.photoUrl) " +
+                "FROM Contact c JOIN c.contact u " +
+                "WHERE c.owner.id = ?1" + (cursor != null ? " AND u.id > ?2" : "") + " " +
+                "ORDER BY u.id";
+        TypedQuery<ContactDTO> typedQuery = getEntityManager().createQuery(query, ContactDTO.class)
+                .setParameter(1, ownerId)
+                .setMaxResults(limit);
+        if (cursor != null) {
+            typedQuery.setParameter(2, cursor.id);
+        }
+        return typedQuery.getResultList();
     }
 
+    @Timed(MessageRepository.REPOSITORY_TIMER)
     public boolean exists(Long ownerId, Long contactId) {
-        return find("owner.id = ?1 AND contact.id = ?2", ownerId, contactId).firstResult() != null;
+        return count("owner.id = ?1 AND contact.id = ?2", ownerId, contactId) > 0;
     }
-}
\ No newline at end of file
+}
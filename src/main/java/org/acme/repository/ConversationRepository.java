@@ -0,0 +1,152 @@
+package org.acme.repository;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.model.Conversation;
+import org.acme.model.Message;
+import org.acme.util.KeysetCursor;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@ApplicationScoped
+public class ConversationRepository implements PanacheRepository<Conversation> {
+
+    static final int PREVIEW_LENGTH = 100;
+
+    /**
+     * Вставка или обновление диалога одним запросом, без отдельного чтения; параллельные первые сообщения
+     * в новой паре не создают дубликатов благодаря uk_conversations_pair. Блокировка строки диалога держится
+     * до коммита окружающей транзакции, поэтому транзакция должна быть короткой, а пакетная запись обновляет
+     * пары в одном порядке, чтобы не взаимоблокироваться.
+     * Последнее сообщение заменяется, только если оно не старше уже сохранённого.
+     */
+    static final String UPSERT_SQL = "INSERT INTO conversations AS c " +
+            "(id, userA_id, userB_id, lastMessageId, lastSenderId, lastMessagePreview, lastMessageAt, unreadA, unreadB) " +
+            "VALUES (nextval('Conversation_SEQ'), :userA, :userB, :messageId, :senderId, :preview, :sentAt, :unreadA, :unreadB) " +
+            "ON CONFLICT (userA_id, userB_id) DO UPDATE SET " +
+            "lastMessageId = CASE WHEN c.lastMessageAt IS NULL OR excluded.lastMessageAt >= c.lastMessageAt THEN excluded.lastMessageId ELSE c.lastMessageId END, " +
+            "lastSenderId = CASE WHEN c.lastMessageAt IS NULL OR excluded.lastMessageAt >= c.lastMessageAt THEN excluded.lastSenderId ELSE c.lastSenderId END, " +
+            "lastMessagePreview = CASE WHEN c.lastMessageAt IS NULL OR excluded.lastMessageAt >= c.lastMessageAt THEN excluded.lastMessagePreview ELSE c.lastMessagePreview END, " +
+            "lastMessageAt = GREATEST(c.lastMessageAt, excluded.lastMessageAt), " +
+            "unreadA = c.unreadA + excluded.unreadA, " +
+            "unreadB = c.unreadB + excluded.unreadB";
+
+    /**
+     * {@link #UPSERT_SQL} для JDBC: параметры идут в порядке появления в VALUES.
+     */
+    static final String UPSERT_JDBC_SQL = UPSERT_SQL.replaceAll(":\\w+", "?");
+
+    public void recordMessage(Message message) {
+        Long senderId = message.sender.id;
+        Long recipientId = message.recipient.id;
+        boolean senderIsA = senderId <= recipientId;
+        boolean toSelf = senderId.equals(recipientId);
+
+        getEntityManager().createNativeQuery(UPSERT_SQL)
+                .setParameter("userA", senderIsA ? senderId : recipientId)
+                .setParameter("userB", senderIsA ? recipientId : senderId)
+                .setParameter("messageId", message.id)
+                .setParameter("senderId", senderId)
+                .setParameter("preview", preview(message.content))
+                .setParameter("sentAt", message.timestamp)
+                .setParameter("unreadA", !toSelf && !senderIsA ? 1 : 0)
+                .setParameter("unreadB", !toSelf && senderIsA ? 1 : 0)
+                .executeUpdate();
+    }
+
+    /**
+     * {@link #recordMessage} для пачки сообщений: по одному upsert на пару собеседников с последним сообщением
+     * пачки и суммой непрочитанного, все upsert одним JDBC-батчем. Пары обновляются в порядке (userA, userB),
+     * чтобы параллельные пачки не блокировали друг друга крест-накрест.
+     */
+    public void recordMessages(List<Message> messages) {
+        Map<String, PairUpdate> byPair = new HashMap<>();
+        for (Message message : messages) {
+            Long senderId = message.sender.id;
+            Long recipientId = message.recipient.id;
+            boolean senderIsA = senderId <= recipientId;
+            boolean toSelf = senderId.equals(recipientId);
+            long userA = senderIsA ? senderId : recipientId;
+            long userB = senderIsA ? recipientId : senderId;
+            PairUpdate update = byPair.computeIfAbsent(userA + ":" + userB, key -> new PairUpdate(userA, userB));
+            if (update.last == null || !message.timestamp.isBefore(update.last.timestamp)) {
+                update.last = message;
+            }
+            update.unreadA += !toSelf && !senderIsA ? 1 : 0;
+            update.unreadB += !toSelf && senderIsA ? 1 : 0;
+        }
+        List<PairUpdate> updates = new ArrayList<>(byPair.values());
+        updates.sort(Comparator.comparingLong((PairUpdate update) -> update.userA).thenComparingLong(update -> update.userB));
+
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT_JDBC_SQL)) {
+                for (PairUpdate update : updates) {
+                    statement.setLong(1, update.userA);
+                    statement.setLong(2, update.userB);
+                    statement.setLong(3, update.last.id);
+                    statement.setLong(4, update.last.sender.id);
+                    statement.setString(5, preview(update.last.content));
+                    statement.setObject(6, update.last.timestamp);
+                    statement.setInt(7, update.unreadA);
+                    statement.setInt(8, update.unreadB);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    private static final class PairUpdate {
+        final long userA;
+        final long userB;
+        Message last;
+        int unreadA;
+        int unreadB;
+
+        PairUpdate(long userA, long userB) {
+            this.userA = userA;
+            this.userB = userB;
+        }
+    }
+
+    /**
+     * Диалоги пользователя по убыванию последней активности, keyset-пагинация по (lastMessageAt, id).
+     */
+    public List<Conversation> findPage(Long userId, KeysetCursor cursor, int limit) {
+        StringBuilder query = new StringBuilder("SELECT c FROM Conversation c " +
+                "JOIN FETCH c.userA " +
+                "JOIN FETCH c.userB " +
+                "WHERE (c.userA.id = ?1 OR c.userB.id = ?1)");
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        if (cursor != null) {
+            params.add(cursor.timestamp);
+            params.add(cursor.id);
+            query.append(" AND (c.lastMessageAt < ?2 OR (c.lastMessageAt = ?2 AND c.id < ?3))");
+        }
+        query.append(" ORDER BY c.lastMessageAt DESC, c.id DESC");
+        return find(query.toString(), params.toArray())
+                .range(0, limit - 1)
+                .list();
+    }
+
+    /**
+     * Сбрасывает счётчик непрочитанного у {@code userId} в диалоге с {@code otherUserId}.
+     */
+    public boolean markRead(Long userId, Long otherUserId) {
+        if (userId <= otherUserId) {
+            return update("unreadA = 0 WHERE userA.id = ?1 AND userB.id = ?2", userId, otherUserId) > 0;
+        }
+        return update("unreadB = 0 WHERE userA.id = ?1 AND userB.id = ?2", otherUserId, userId) > 0;
+    }
+
+    static String preview(String content) {
+        return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH);
+    }
+}
@@ -1,16 +1,79 @@
 package org.acme.repository;
 
+import io.micrometer.core.annotation.Timed;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.Query;
+import org.acme.dto.MessageDTO;
 import org.acme.model.Message;
 import org.acme.model.User;
+import org.acme.service.MessageCreatedEvent;
+import org.acme.service.UserSnapshot;
+import org.acme.util.KeysetCursor;
+import org.hibernate.exception.ConstraintViolationException;
 
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class MessageRepository implements PanacheRepository<Message> {
 
+    /**
+     * Общий таймер запросов репозиториев; метод различается тегами class/method, которые добавляет @Timed.
+     */
+    public static final String REPOSITORY_TIMER = "chat.repository.query";
+
+    /**
+     * Уникальный индекс (sender_id, clientMessageId) из V5__client_message_id.sql.
+     */
+    public static final String CLIENT_MESSAGE_ID_CONSTRAINT = "uk_message_sender_client_id";
+
+    /**
+     * Должна совпадать с конфигурацией колонки searchVector в V6__message_search.sql.
+     */
+    static final String SEARCH_CONFIG = "'russian'";
+
+    static final String SEARCH_QUERY = "websearch_to_tsquery(" + SEARCH_CONFIG + ", :q)";
+
+    /**
+     * Содержимое экранируется до ts_headline: в выдаче остаются только теги подсветки.
+     */
+    static final String SEARCH_HEADLINE = "ts_headline(" + SEARCH_CONFIG + ", " +
+            "replace(replace(replace(h.content, '&', '&amp;'), '<', '&lt;'), '>', '&gt;'), " + SEARCH_QUERY + ", " +
+            "'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=20, MinWords=5')";
+
+    /**
+     * Совпадения ищутся по idx_message_sender_search/idx_message_recipient_search и ранжируются все сразу:
+     * у одного пользователя их немного даже на большой таблице. Подсветка и имена участников —
+     * только для строк выбранной страницы.
+     */
+    static final String SEARCH_SQL = "WITH h AS (" +
+            "SELECT m.id, m.sender_id, m.recipient_id, m.content, m.\"timestamp\", ts_rank(m.searchVector, " + SEARCH_QUERY + ") AS rank " +
+            "FROM Message m " +
+            "WHERE m.searchVector @@ " + SEARCH_QUERY + " AND %s " +
+            "ORDER BY rank DESC, m.id DESC " +
+            "LIMIT :limit OFFSET :offset) " +
+            "SELECT h.id, h.sender_id, s.username, h.recipient_id, r.username, h.content, h.\"timestamp\", " + SEARCH_HEADLINE + " " +
+            "FROM h " +
+            "JOIN app_users s ON s.id = h.sender_id " +
+            "JOIN app_users r ON r.id = h.recipient_id " +
+            "ORDER BY h.rank DESC, h.id DESC";
+
+    @Inject
+    ConversationRepository conversationRepository;
+
+    @Inject
+    Event<MessageCreatedEvent> messageCreated;
+
+    @Timed(REPOSITORY_TIMER)
     public List<Message> findConversation(Long userId1, Long userId2) {
         return find("SELECT m FROM Message m " +
                 "JOIN FETCH m.sender " +
@@ -20,6 +83,7 @@ public class MessageRepository implements PanacheRepository<Message> {
                 "ORDER BY m.timestamp", userId1, userId2).list();
     }
 
+    @Timed(REPOSITORY_TIMER)
     public List<Message> findByParticipant(Long userId) {
         return find("SELECT m FROM Message m " +
                 "JOIN FETCH m.sender " +
@@ -28,30 +92,197 @@ public class MessageRepository implements PanacheRepository<Message> {
                 "ORDER BY m.timestamp", userId).list();
     }
 
-    public List<Message> findConversationSince(Long userId1, Long userId2, LocalDateTime since) {
+    /**
+     * Страница сообщений участника (или переписки с {@code withUserId}) в порядке (timestamp, id).
+     * При {@code backward = true} идём от новых к старым, и сообщения возвращаются в обратном порядке.
+     * Память на запрос ограничена {@code limit} вне зависимости от длины истории.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public List<Message> findPage(Long userId, Long withUserId, LocalDateTime since, KeysetCursor cursor, boolean backward, int limit) {
+        StringBuilder query = new StringBuilder("SELECT m FROM Message m " +
+                "JOIN FETCH m.sender " +
+                "JOIN FETCH m.recipient ");
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        if (withUserId != null) {
+            params.add(withUserId);
+            query.append("WHERE ((m.sender.id = ?1 AND m.recipient.id = ?2) OR " +
+                    "(m.sender.id = ?2 AND m.recipient.id = ?1))");
+        } else {
+            query.append("WHERE (m.sender.id = ?1 OR m.recipient.id = ?1)");
+        }
+        if (since != null) {
+            params.add(since);
+            query.append(" AND m.timestamp > ?").append(params.size());
+        }
+        if (cursor != null) {
+            params.add(cursor.timestamp);
+            int timestampParam = params.size();
+            params.add(cursor.id);
+            int idParam = params.size();
+            String op = backward ? "<" : ">";
+            query.append(" AND (m.timestamp ").append(op).append(" ?").append(timestampParam)
+                    .append(" OR (m.timestamp = ?").append(timestampParam)
+                    .append(" AND m.id ").append(op).append(" ?").append(idParam).append("))");
+        }
+        query.append(backward ? " ORDER BY m.timestamp DESC, m.id DESC" : " ORDER BY m.timestamp, m.id");
+        return find(query.toString(), params.toArray())
+                .range(0, limit - 1)
+                .list();
+    }
+
+    /**
+     * Сообщения участника, созданные после сообщения {@code afterMessageId}, в порядке (timestamp, id).
+     * Идентификаторы выделяются блоками и не монотонны во времени, поэтому продолжаем по времени
+     * последнего увиденного сообщения, а id используем только для разрешения равных timestamp.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public List<Message> findByParticipantAfter(Long userId, Long afterMessageId, int limit) {
+        Message last = findById(afterMessageId);
+        if (last == null) {
+            return List.of();
+        }
+        return findPage(userId, null, null, KeysetCursor.of(last.timestamp, last.id), false, limit);
+    }
+
+    /**
+     * Полнотекстовый поиск по сообщениям участника (или переписки с {@code withUserId}), от более релевантных
+     * к менее релевантным. {@code query} — в синтаксисе websearch_to_tsquery: слова, "фраза", -исключение, or.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public List<MessageDTO.SearchResult> search(Long userId, Long withUserId, String query, int offset, int limit) {
+        String participants = withUserId != null
+                ? "((m.sender_id = :userId AND m.recipient_id = :withUserId) OR (m.sender_id = :withUserId AND m.recipient_id = :userId))"
+                : "(m.sender_id = :userId OR m.recipient_id = :userId)";
+        Query nativeQuery = getEntityManager().createNativeQuery(SEARCH_SQL.formatted(participants))
+                .setParameter("q", query)
+                .setParameter("userId", userId)
+                .setParameter("limit", limit)
+                .setParameter("offset", offset);
+        if (withUserId != null) {
+            nativeQuery.setParameter("withUserId", withUserId);
+        }
+        List<?> rows = nativeQuery.getResultList();
+        List<MessageDTO.SearchResult> results = new ArrayList<>(rows.size());
+        for (Object result : rows) {
+            Object[] row = (Object[]) result;
+            MessageDTO.MessageResponse message = new MessageDTO.MessageResponse(
+                    ((Number) row[0]).longValue(),
+                    ((Number) row[1]).longValue(),
+                    (String) row[2],
+                    ((Number) row[3]).longValue(),
+                    (String) row[4],
+                    (String) row[5],
+                    toLocalDateTime(row[6]).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            results.add(new MessageDTO.SearchResult(message, (String) row[7]));
+        }
+        return results;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+    /**
+     * Сохраняет сообщение между уже проверенными пользователями. Участники подставляются ссылками
+     * без чтения {@code app_users}, а ответ собирается из снимков, чтобы не инициализировать прокси.
+     * <p>
+     * С {@code clientMessageId} вставка выполняется сразу: повтор, успевший раньше, даёт нарушение
+     * {@link #CLIENT_MESSAGE_ID_CONSTRAINT} здесь, а не при коммите (см. {@link #isDuplicateClientMessageId}).
+     */
+    @Timed(REPOSITORY_TIMER)
+    public MessageDTO.MessageResponse create(UserSnapshot sender, UserSnapshot recipient, String content, String clientMessageId) {
+        Message message = new Message();
+        message.sender = getEntityManager().getReference(User.class, sender.id);
+        message.recipient = getEntityManager().getReference(User.class, recipient.id);
+        message.content = content;
+        message.timestamp = LocalDateTime.now();
+        message.clientMessageId = clientMessageId;
+        message.persist();
+        if (clientMessageId != null) {
+            flush();
+        }
+        conversationRepository.recordMessage(message);
+        MessageDTO.MessageResponse response = MessageDTO.MessageResponse.from(message, sender.username, recipient.username);
+        messageCreated.fire(new MessageCreatedEvent(response));
+        return response;
+    }
+
+    /**
+     * Сообщение, уже отправленное {@code senderId} с этим {@code clientMessageId}, или {@code null}.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public Message findByClientMessageId(Long senderId, String clientMessageId) {
         return find("SELECT m FROM Message m " +
                 "JOIN FETCH m.sender " +
                 "JOIN FETCH m.recipient " +
-                "WHERE ((m.sender.id = ?1 AND m.recipient.id = ?2) OR " +
-                "(m.sender.id = ?2 AND m.recipient.id = ?1)) AND m.timestamp > ?3 " +
-                "ORDER BY m.timestamp", userId1, userId2, since).list();
+                "WHERE m.sender.id = ?1 AND m.clientMessageId = ?2", senderId, clientMessageId).firstResult();
     }
 
-    public List<Message> findByParticipantSince(Long userId, LocalDateTime since) {
+    /**
+     * То же для пачки: все уже отправленные сообщения {@code senderId} с любым из {@code clientMessageIds}.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public List<Message> findByClientMessageIds(Long senderId, Collection<String> clientMessageIds) {
+        if (clientMessageIds.isEmpty()) {
+            return List.of();
+        }
         return find("SELECT m FROM Message m " +
                 "JOIN FETCH m.sender " +
                 "JOIN FETCH m.recipient " +
-                "WHERE (m.sender.id = ?1 OR m.recipient.id = ?1) AND m.timestamp > ?2 " +
-                "ORDER BY m.timestamp", userId, since).list();
+                "WHERE m.sender.id = ?1 AND m.clientMessageId IN ?2", senderId, clientMessageIds).list();
     }
 
-    public Message create(User sender, User recipient, String content) {
-        Message message = new Message();
-        message.sender = sender;
-        message.recipient = recipient;
-        message.content = content;
-        message.timestamp = LocalDateTime.now();
-        message.persist();
-        return message;
+    /**
+     * Нарушен ли {@link #CLIENT_MESSAGE_ID_CONSTRAINT}: параллельный повтор с тем же clientMessageId вставил строку первым.
+     */
+    public static boolean isDuplicateClientMessageId(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null
+                    && violation.getConstraintName().contains(CLIENT_MESSAGE_ID_CONSTRAINT)) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && "23505".equals(sqlException.getSQLState())
+                    && String.valueOf(sqlException.getMessage()).contains(CLIENT_MESSAGE_ID_CONSTRAINT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Сохраняет пачку уже проверенных сообщений одного отправителя. Id выдаются из пула последовательности
+     * без запроса на каждую строку, вставки уходят JDBC-батчами при flush
+     * ({@code quarkus.hibernate-orm.jdbc.statement-batch-size}), диалоги обновляются по одному upsert на пару.
+     * Все сообщения пачки получают одно время; порядок внутри пачки задаёт возрастающий id.
+     *
+     * @return ответы в порядке {@code messages}
+     */
+    @Timed(REPOSITORY_TIMER)
+    public List<MessageDTO.MessageResponse> createAll(UserSnapshot sender, List<MessageDTO.CreateMessage> messages,
+                                                      Map<Long, String> recipientUsernames) {
+        LocalDateTime timestamp = LocalDateTime.now();
+        User senderReference = getEntityManager().getReference(User.class, sender.id);
+        List<Message> created = new ArrayList<>(messages.size());
+        for (MessageDTO.CreateMessage data : messages) {
+            Message message = new Message();
+            message.sender = senderReference;
+            message.recipient = getEntityManager().getReference(User.class, data.recipientId);
+            message.content = data.content;
+            message.timestamp = timestamp;
+            message.clientMessageId = data.clientMessageId;
+            persist(message);
+            created.add(message);
+        }
+        conversationRepository.recordMessages(created);
+
+        List<MessageDTO.MessageResponse> responses = new ArrayList<>(created.size());
+        for (Message message : created) {
+            MessageDTO.MessageResponse response = MessageDTO.MessageResponse.from(message, sender.username,
+                    recipientUsernames.get(message.recipient.id));
+            messageCreated.fire(new MessageCreatedEvent(response));
+            responses.add(response);
+        }
+        return responses;
     }
-}
\ No newline at end of file
+}
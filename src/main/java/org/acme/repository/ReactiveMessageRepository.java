@@ -0,0 +1,203 @@
+package org.acme.repository;
+
+import io.micrometer.core.annotation.Timed;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.SqlClient;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.acme.dto.MessageDTO;
+import org.acme.service.MessageCreatedEvent;
+import org.acme.util.KeysetCursor;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.acme.repository.MessageRepository.REPOSITORY_TIMER;
+
+/**
+ * Неблокирующий вариант {@link MessageRepository} для горячего пути сообщений поверх реактивного клиента
+ * PostgreSQL: запросы не занимают поток на время ожидания базы. Таблицы и последовательности те же,
+ * что у Hibernate, поэтому оба пути работают с одними данными; SQL повторяет их запросы один в один.
+ * <p>
+ * Hibernate здесь не участвует: сущности не загружаются, {@link org.acme.service.UserCache} не используется
+ * (он читает базу блокирующим JDBC), а участники проверяются одним запросом по id.
+ */
+@ApplicationScoped
+public class ReactiveMessageRepository {
+
+    private static final String ACTIVE_USERNAMES_SQL = "SELECT id, username FROM app_users WHERE id = ANY($1) AND active";
+
+    // Значение nextval — верхняя граница блока, который Hibernate (pooled, шаг 50) уже не выдаст, поэтому id не пересекаются
+    // Повтор с занятым clientMessageId ничего не вставляет и не возвращает строк
+    private static final String INSERT_SQL = "INSERT INTO Message (id, sender_id, recipient_id, content, \"timestamp\", clientMessageId) " +
+            "VALUES (nextval('Message_SEQ'), $1, $2, $3, $4, $5) " +
+            "ON CONFLICT (sender_id, clientMessageId) DO NOTHING RETURNING id";
+
+    /**
+     * {@link ConversationRepository#UPSERT_SQL} с позиционными параметрами реактивного клиента.
+     */
+    private static final String UPSERT_CONVERSATION_SQL = ConversationRepository.UPSERT_SQL
+            .replace(":userA", "$1")
+            .replace(":userB", "$2")
+            .replace(":messageId", "$3")
+            .replace(":senderId", "$4")
+            .replace(":preview", "$5")
+            .replace(":sentAt", "$6")
+            .replace(":unreadA", "$7")
+            .replace(":unreadB", "$8");
+
+    private static final String PAGE_SELECT = "SELECT m.id, m.sender_id, s.username AS sender_username, " +
+            "m.recipient_id, r.username AS recipient_username, m.content, m.\"timestamp\" " +
+            "FROM Message m " +
+            "JOIN app_users s ON s.id = m.sender_id " +
+            "JOIN app_users r ON r.id = m.recipient_id ";
+
+    @Inject
+    Pool client;
+
+    @Inject
+    Event<MessageCreatedEvent> messageCreated;
+
+    /**
+     * Usernames активных пользователей по id; неактивные и несуществующие в результат не попадают.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public Uni<Map<Long, String>> findActiveUsernames(Long... ids) {
+        return client.preparedQuery(ACTIVE_USERNAMES_SQL)
+                .execute(Tuple.of((Object) ids))
+                .map(rows -> {
+                    Map<Long, String> usernames = new HashMap<>();
+                    for (Row row : rows) {
+                        usernames.put(row.getLong("id"), row.getString("username"));
+                    }
+                    return usernames;
+                });
+    }
+
+    /**
+     * Сохраняет сообщение и обновляет диалог в одной транзакции. {@link MessageCreatedEvent} публикуется
+     * после коммита; вне JTA-транзакции наблюдатели с {@code AFTER_SUCCESS} вызываются сразу.
+     *
+     * @return созданное сообщение или {@code null}, если у отправителя уже есть сообщение с этим {@code clientMessageId}
+     */
+    @Timed(REPOSITORY_TIMER)
+    public Uni<MessageDTO.MessageResponse> create(Long senderId, String senderUsername, Long recipientId,
+                                                  String recipientUsername, String content, String clientMessageId) {
+        LocalDateTime timestamp = LocalDateTime.now();
+        return client.withTransaction(connection -> connection.preparedQuery(INSERT_SQL)
+                        .execute(Tuple.of(senderId, recipientId, content, timestamp, clientMessageId))
+                        .flatMap(rows -> {
+                            if (!rows.iterator().hasNext()) {
+                                return Uni.createFrom().<Long>nullItem();
+                            }
+                            Long id = rows.iterator().next().getLong("id");
+                            return recordConversation(connection, id, senderId, recipientId, content, timestamp).replaceWith(id);
+                        }))
+                .onItem().ifNotNull().transform(id -> new MessageDTO.MessageResponse(id, senderId, senderUsername, recipientId,
+                        recipientUsername, content, timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
+                .onItem().ifNotNull().invoke(response -> messageCreated.fire(new MessageCreatedEvent(response)));
+    }
+
+    /**
+     * Сообщение, уже отправленное {@code senderId} с этим {@code clientMessageId}, или {@code null}.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public Uni<MessageDTO.MessageResponse> findByClientMessageId(Long senderId, String clientMessageId) {
+        return client.preparedQuery(PAGE_SELECT + "WHERE m.sender_id = $1 AND m.clientMessageId = $2")
+                .execute(Tuple.of(senderId, clientMessageId))
+                .map(rows -> {
+                    List<MessageDTO.MessageResponse> messages = toResponses(rows);
+                    return messages.isEmpty() ? null : messages.get(0);
+                });
+    }
+
+    private Uni<?> recordConversation(SqlClient connection, Long messageId, Long senderId, Long recipientId,
+                                      String content, LocalDateTime sentAt) {
+        boolean senderIsA = senderId <= recipientId;
+        boolean toSelf = senderId.equals(recipientId);
+        return connection.preparedQuery(UPSERT_CONVERSATION_SQL)
+                .execute(Tuple.of(
+                        senderIsA ? senderId : recipientId,
+                        senderIsA ? recipientId : senderId,
+                        messageId,
+                        senderId,
+                        ConversationRepository.preview(content),
+                        sentAt,
+                        !toSelf && !senderIsA ? 1 : 0,
+                        !toSelf && senderIsA ? 1 : 0));
+    }
+
+    /**
+     * То же, что {@link MessageRepository#findPage}: страница в порядке (timestamp, id),
+     * при {@code backward = true} — от новых к старым.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public Uni<List<MessageDTO.MessageResponse>> findPage(Long userId, Long withUserId, LocalDateTime since,
+                                                          KeysetCursor cursor, boolean backward, int limit) {
+        StringBuilder query = new StringBuilder(PAGE_SELECT);
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        if (withUserId != null) {
+            params.add(withUserId);
+            query.append("WHERE ((m.sender_id = $1 AND m.recipient_id = $2) OR " +
+                    "(m.sender_id = $2 AND m.recipient_id = $1))");
+        } else {
+            query.append("WHERE (m.sender_id = $1 OR m.recipient_id = $1)");
+        }
+        if (since != null) {
+            params.add(since);
+            query.append(" AND m.\"timestamp\" > $").append(params.size());
+        }
+        if (cursor != null) {
+            params.add(cursor.timestamp);
+            int timestampParam = params.size();
+            params.add(cursor.id);
+            int idParam = params.size();
+            String op = backward ? "<" : ">";
+            query.append(" AND (m.\"timestamp\" ").append(op).append(" $").append(timestampParam)
+                    .append(" OR (m.\"timestamp\" = $").append(timestampParam)
+                    .append(" AND m.id ").append(op).append(" $").append(idParam).append("))");
+        }
+        query.append(backward ? " ORDER BY m.\"timestamp\" DESC, m.id DESC" : " ORDER BY m.\"timestamp\", m.id");
+        params.add(limit);
+        query.append(" LIMIT $").append(params.size());
+
+        return client.preparedQuery(query.toString())
+                .execute(Tuple.tuple(params))
+                .map(ReactiveMessageRepository::toResponses);
+    }
+
+    /**
+     * Сообщения по id в порядке (timestamp, id); удалённые пропускаются.
+     */
+    @Timed(REPOSITORY_TIMER)
+    public Uni<List<MessageDTO.MessageResponse>> findByIds(List<Long> ids) {
+        return client.preparedQuery(PAGE_SELECT + "WHERE m.id = ANY($1) ORDER BY m.\"timestamp\", m.id")
+                .execute(Tuple.of((Object) ids.toArray(new Long[0])))
+                .map(ReactiveMessageRepository::toResponses);
+    }
+
+    private static List<MessageDTO.MessageResponse> toResponses(RowSet<Row> rows) {
+        List<MessageDTO.MessageResponse> messages = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            messages.add(new MessageDTO.MessageResponse(
+                    row.getLong("id"),
+                    row.getLong("sender_id"),
+                    row.getString("sender_username"),
+                    row.getLong("recipient_id"),
+                    row.getString("recipient_username"),
+                    row.getString("content"),
+                    row.getLocalDateTime("timestamp").format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)));
+        }
+        return messages;
+    }
+}
@@ -2,8 +2,152 @@ package org.acme.repository;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.dto.ContactDTO;
 import org.acme.model.User;
+import org.acme.util.KeysetCursor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class UserRepository implements PanacheRepository<User> {
-}
\ No newline at end of file
+
+    /**
+     * Короче трёх символов триграммный индекс бесполезен, такие запросы ищут по началу username.
+     */
+    public static final int SEARCH_MIN_FUZZY_LENGTH = 3;
+
+    /**
+     * Должно совпадать с выражением индекса idx_app_users_search_trgm в V11__user_search_bounded.sql.
+     */
+    static final String SEARCH_DOCUMENT = "lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))";
+
+    /**
+     * Первый проход: совпадения по началу username, имени или фамилии, точные первыми.
+     * Каждая ветка читает свой btree-индекс по порядку и останавливается на {@code limit}, так что даже запрос,
+     * которому соответствует каждый пользователь (например, "user"), сортирует не больше {@code 3 * limit} строк.
+     */
+    static final String SEARCH_PREFIX_SQL = "SELECT id, username, firstName, lastName, photoUrl FROM (" +
+            "(SELECT id, username, firstName, lastName, photoUrl FROM app_users " +
+            "WHERE active AND lower(username) COLLATE \"C\" LIKE :usernamePrefix ORDER BY lower(username) COLLATE \"C\", id LIMIT :limit) " +
+            "UNION " +
+            "(SELECT id, username, firstName, lastName, photoUrl FROM app_users " +
+            "WHERE active AND lower(firstName) COLLATE \"C\" LIKE :prefix ORDER BY lower(firstName) COLLATE \"C\", id LIMIT :limit) " +
+            "UNION " +
+            "(SELECT id, username, firstName, lastName, photoUrl FROM app_users " +
+            "WHERE active AND lower(lastName) COLLATE \"C\" LIKE :prefix ORDER BY lower(lastName) COLLATE \"C\", id LIMIT :limit)" +
+            ") u " +
+            "ORDER BY CASE WHEN lower(username) = :username OR lower(firstName) = :q OR lower(lastName) = :q THEN 0 ELSE 1 END, " +
+            "word_similarity(:q, " + SEARCH_DOCUMENT + ") DESC, id " +
+            "LIMIT :limit";
+
+    /**
+     * Второй проход, если первый не набрал {@code limit}: ближайшие по {@code word_similarity} (подстроки и опечатки).
+     * GiST-индекс отдаёт строки в порядке расстояния, обход останавливается на {@code limit}.
+     */
+    static final String SEARCH_SIMILAR_SQL = "SELECT id, username, firstName, lastName, photoUrl FROM app_users " +
+            "WHERE active AND :q <% " + SEARCH_DOCUMENT + " " +
+            "ORDER BY :q <<-> " + SEARCH_DOCUMENT + " " +
+            "LIMIT :limit";
+
+    /**
+     * Обходит idx_app_users_username_prefix по порядку и останавливается на {@code limit}; точное совпадение идёт первым.
+     */
+    static final String SEARCH_USERNAME_PREFIX_SQL = "SELECT id, username, firstName, lastName, photoUrl FROM app_users " +
+            "WHERE active AND lower(username) COLLATE \"C\" LIKE :usernamePrefix " +
+            "ORDER BY lower(username) COLLATE \"C\", id " +
+            "LIMIT :limit";
+
+    /**
+     * Выбираются только публичные поля: без хеша пароля и без сущностей в контексте персистентности.
+     */
+    static final String CONTACT_PROJECTION = "SELECT new org.acme.dto.ContactDTO(u.id, u.username, u.firstName, u.lastName, u.photoUrl) " +
+            "FROM User u WHERE u.active = true";
+
+    /**
+     * Страница активных пользователей от новых к старым, keyset-пагинация по id.
+     */
+    public List<ContactDTO> findContactPage(KeysetCursor cursor, int limit) {
+        if (cursor == null) {
+            return getEntityManager().createQuery(CONTACT_PROJECTION + " ORDER BY u.id DESC", ContactDTO.class)
+                    .setMaxResults(limit)
+                    .getResultList();
+        }
+        return getEntityManager().createQuery(CONTACT_PROJECTION + " AND u.id < ?1 ORDER BY u.id DESC", ContactDTO.class)
+                .setParameter(1, cursor.id)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Поиск активных пользователей по username, имени и фамилии с ранжированием: сначала совпадения по началу
+     * ({@link #SEARCH_PREFIX_SQL}), затем похожие ({@link #SEARCH_SIMILAR_SQL}).
+     * Username всегда начинается с {@code @}, поэтому запрос без него тоже сопоставляется с началом username.
+     */
+    public List<ContactDTO> search(String query, int limit) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        String username = q.startsWith("@") ? q : "@" + q;
+        String term = q.startsWith("@") ? q.substring(1) : q;
+
+        if (term.length() < SEARCH_MIN_FUZZY_LENGTH) {
+            return toContacts(getEntityManager().createNativeQuery(SEARCH_USERNAME_PREFIX_SQL)
+                    .setParameter("usernamePrefix", escapeLike(username) + "%")
+                    .setParameter("limit", limit)
+                    .getResultList());
+        }
+
+        Map<Long, ContactDTO> found = new LinkedHashMap<>();
+        toContacts(getEntityManager().createNativeQuery(SEARCH_PREFIX_SQL)
+                .setParameter("q", term)
+                .setParameter("prefix", escapeLike(term) + "%")
+                .setParameter("username", username)
+                .setParameter("usernamePrefix", escapeLike(username) + "%")
+                .setParameter("limit", limit)
+                .getResultList())
+                .forEach(contact -> found.put(contact.id, contact));
+        if (found.size() < limit) {
+            // Совпадения по началу снова придут отсюда; берём limit строк, чтобы после них хватило на добор
+            toContacts(getEntityManager().createNativeQuery(SEARCH_SIMILAR_SQL)
+                    .setParameter("q", term)
+                    .setParameter("limit", limit)
+                    .getResultList())
+                    .forEach(contact -> found.putIfAbsent(contact.id, contact));
+        }
+        return found.values().stream().limit(limit).collect(Collectors.toList());
+    }
+
+    private static List<ContactDTO> toContacts(List<?> rows) {
+        return rows.stream()
+                .map(row -> (Object[]) row)
+                .map(row -> new ContactDTO(((Number) row[0]).longValue(), (String) row[1], (String) row[2], (String) row[3], (String) row[4]))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Usernames активных пользователей по id одним запросом {@code IN}; неактивные и несуществующие в результат не попадают.
+     */
+    public Map<Long, String> findActiveUsernames(Collection<Long> ids) {
+        Map<Long, String> usernames = new HashMap<>();
+        if (ids.isEmpty()) {
+            return usernames;
+        }
+        getEntityManager()
+                .createQuery("SELECT u.id, u.username FROM User u WHERE u.id IN ?1 AND u.active = true", Object[].class)
+                .setParameter(1, ids)
+                .getResultList()
+                .forEach(row -> usernames.put((Long) row[0], (String) row[1]));
+        return usernames;
+    }
+
+    /**
+     * Экранирует спецсимволы LIKE (в PostgreSQL по умолчанию escape-символ — обратная косая черта).
+     */
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,70 @@
+package org.acme.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.acme.dto.MessageDTO;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+
+/**
+ * Недавно отправленные сообщения по (отправитель, clientMessageId). Повтор отправки с мобильного клиента
+ * обычно приходит через секунды, и такой повтор отвечается из памяти без запроса в базу.
+ * Источник истины — уникальный индекс uk_message_sender_client_id: промах кеша (другой узел, вытеснение)
+ * проверяется запросом, а гонка двух повторов — нарушением ограничения.
+ * Кладите сюда только закоммиченные сообщения.
+ */
+@ApplicationScoped
+public class ClientMessageIdCache {
+
+    public static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 64;
+
+    /**
+     * Заголовок ответа на повтор: {@code true}, если сообщение было отправлено раньше и не создавалось заново.
+     */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    @ConfigProperty(name = "chat.idempotency.maximum-size", defaultValue = "100000")
+    long maximumSize;
+
+    @ConfigProperty(name = "chat.idempotency.expire-after-write", defaultValue = "10m")
+    Duration expireAfterWrite;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Cache<String, MessageDTO.MessageResponse> recent;
+
+    @PostConstruct
+    void init() {
+        recent = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, recent, "client_message_ids");
+    }
+
+    public static boolean isValid(String clientMessageId) {
+        return !clientMessageId.isBlank() && clientMessageId.length() <= MAX_CLIENT_MESSAGE_ID_LENGTH;
+    }
+
+    public MessageDTO.MessageResponse find(Long senderId, String clientMessageId) {
+        return recent.getIfPresent(key(senderId, clientMessageId));
+    }
+
+    public void remember(Long senderId, String clientMessageId, MessageDTO.MessageResponse message) {
+        if (clientMessageId != null) {
+            recent.put(key(senderId, clientMessageId), message);
+        }
+    }
+
+    private static String key(Long senderId, String clientMessageId) {
+        return senderId + ":" + clientMessageId;
+    }
+}
@@ -0,0 +1,263 @@
+package org.acme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.pgclient.pubsub.PgSubscriber;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import io.vertx.pgclient.PgConnectOptions;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.acme.dto.MessageDTO;
+import org.acme.repository.ReactiveMessageRepository;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Рассылка новых сообщений между узлами через PostgreSQL {@code LISTEN/NOTIFY}.
+ * Узел, закоммитивший сообщение, публикует в канал только id сообщений, сгруппированные по участникам;
+ * остальные узлы будят long polling этих пользователей ({@link MessageWaiters}) и, если у пользователя
+ * есть WebSocket-подключение на этом узле, догружают сообщения по id и отдают их в {@link MessageSessionRegistry}.
+ * <p>
+ * Пока предыдущий NOTIFY в полёте, новые сообщения копятся и уходят следующей пачкой одного запроса:
+ * задержка не добавляется, а под нагрузкой число уведомлений растёт медленнее числа сообщений.
+ * Уведомления не хранятся: пока узел переподключается к базе, он их пропускает, и клиенты
+ * догружают пропущенное обычным запросом (long polling по таймауту, WebSocket с параметром {@code after}).
+ */
+@ApplicationScoped
+public class ClusterMessageBus {
+
+    /**
+     * Полезная нагрузка NOTIFY ограничена 8000 байтами.
+     */
+    static final int MAX_PAYLOAD = 7900;
+
+    /**
+     * Сообщений в одной пачке; даже если все они одного пользователя, его запись помещается в {@link #MAX_PAYLOAD}.
+     */
+    static final int MAX_BATCH = 200;
+
+    private static final long RECONNECT_DELAY_MS = 1000;
+    private static final String NOTIFY_SQL = "SELECT pg_notify($1, $2)";
+
+    @ConfigProperty(name = "chat.cluster.notify.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "chat.cluster.notify.channel", defaultValue = "chat_messages")
+    String channel;
+
+    @ConfigProperty(name = "quarkus.datasource.reactive.url")
+    Optional<String> url;
+
+    @ConfigProperty(name = "quarkus.datasource.username")
+    Optional<String> username;
+
+    @ConfigProperty(name = "quarkus.datasource.password")
+    Optional<String> password;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    ReactiveMessageRepository messageRepository;
+
+    @Inject
+    MessageSessionRegistry sessionRegistry;
+
+    @Inject
+    MessageWaiters messageWaiters;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Queue<MessageDTO.MessageResponse> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean publishing = new AtomicBoolean();
+
+    private PgSubscriber subscriber;
+    private volatile boolean listening;
+    private Counter published;
+    private Counter received;
+    private Timer latency;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        published = registry.counter("chat.cluster.notify.published");
+        received = registry.counter("chat.cluster.notify.received");
+        // Считается по часам двух узлов, поэтому включает их расхождение
+        latency = registry.timer("chat.cluster.notify.latency");
+
+        PgConnectOptions options = PgConnectOptions.fromUri(url
+                .orElseThrow(() -> new IllegalStateException("chat.cluster.notify.enabled requires quarkus.datasource.reactive.url"))
+                .replaceFirst("^vertx-reactive:", ""));
+        username.ifPresent(options::setUser);
+        password.ifPresent(options::setPassword);
+
+        subscriber = PgSubscriber.subscriber(vertx, options)
+                .reconnectPolicy(retries -> RECONNECT_DELAY_MS);
+        subscriber.channel(channel)
+                .handler(this::onNotification)
+                .subscribeHandler(() -> {
+                    listening = true;
+                    Log.infof("Node %s listens on channel %s", nodeId, channel);
+                });
+        subscriber.closeHandler(() -> listening = false);
+        connect();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (subscriber != null) {
+            subscriber.closeAndAwait();
+        }
+    }
+
+    /**
+     * {@code LISTEN} выполнен и соединение подписчика открыто: уведомления других узлов доходят до этого.
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    private void connect() {
+        // reconnectPolicy действует только после обрыва, первое подключение повторяем сами
+        subscriber.connect().subscribe().with(
+                ignored -> { },
+                failure -> {
+                    Log.warnf(failure, "Failed to connect LISTEN subscriber, retrying in %d ms", RECONNECT_DELAY_MS);
+                    vertx.setTimer(RECONNECT_DELAY_MS, id -> connect());
+                });
+    }
+
+    void onMessageCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageCreatedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        pending.add(event.message);
+        publish();
+    }
+
+    private void publish() {
+        while (!pending.isEmpty() && publishing.compareAndSet(false, true)) {
+            List<MessageDTO.MessageResponse> batch = new ArrayList<>();
+            MessageDTO.MessageResponse next;
+            while (batch.size() < MAX_BATCH && (next = pending.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                publishing.set(false);
+                continue;
+            }
+            List<Tuple> notifications = new ArrayList<>();
+            for (String payload : encode(batch)) {
+                notifications.add(Tuple.of(channel, payload));
+            }
+            client.preparedQuery(NOTIFY_SQL).executeBatch(notifications).subscribe().with(
+                    ignored -> {
+                        published.increment(notifications.size());
+                        publishing.set(false);
+                        publish();
+                    },
+                    failure -> {
+                        Log.warnf(failure, "Failed to publish %d messages to channel %s", batch.size(), channel);
+                        publishing.set(false);
+                        publish();
+                    });
+            return;
+        }
+    }
+
+    /**
+     * {@code <узел>|<время отправки, мс>|<пользователь>:<id>,<id>;<пользователь>:<id>...} — каждый участник
+     * упоминается в пачке один раз, со всеми своими сообщениями. Пачка режется на несколько уведомлений,
+     * если не помещается в {@link #MAX_PAYLOAD}.
+     */
+    List<String> encode(List<MessageDTO.MessageResponse> batch) {
+        Map<Long, StringBuilder> idsByUser = new LinkedHashMap<>();
+        for (MessageDTO.MessageResponse message : batch) {
+            appendId(idsByUser, message.recipientId, message.id);
+            if (!message.senderId.equals(message.recipientId)) {
+                appendId(idsByUser, message.senderId, message.id);
+            }
+        }
+
+        String header = nodeId + "|" + System.currentTimeMillis() + "|";
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(header);
+        for (Map.Entry<Long, StringBuilder> entry : idsByUser.entrySet()) {
+            String part = entry.getKey() + ":" + entry.getValue();
+            if (payload.length() > header.length() && payload.length() + 1 + part.length() > MAX_PAYLOAD) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder(header);
+            }
+            if (payload.length() > header.length()) {
+                payload.append(';');
+            }
+            payload.append(part);
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    private static void appendId(Map<Long, StringBuilder> idsByUser, Long userId, Long messageId) {
+        StringBuilder ids = idsByUser.get(userId);
+        if (ids == null) {
+            idsByUser.put(userId, new StringBuilder().append(messageId));
+        } else {
+            ids.append(',').append(messageId);
+        }
+    }
+
+    void onNotification(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        received.increment();
+        Set<Long> toLoad = new LinkedHashSet<>();
+        try {
+            latency.record(Math.max(0, System.currentTimeMillis() - Long.parseLong(parts[1])), TimeUnit.MILLISECONDS);
+            for (String entry : parts[2].split(";")) {
+                int colon = entry.indexOf(':');
+                Long userId = Long.valueOf(entry.substring(0, colon));
+                messageWaiters.wake(userId);
+                if (sessionRegistry.isConnected(userId)) {
+                    for (String id : entry.substring(colon + 1).split(",")) {
+                        toLoad.add(Long.valueOf(id));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.debugf(e, "Ignoring malformed notification on channel %s: %s", channel, payload);
+            return;
+        }
+        if (!toLoad.isEmpty()) {
+            messageRepository.findByIds(new ArrayList<>(toLoad)).subscribe().with(
+                    messages -> messages.forEach(sessionRegistry::deliver),
+                    failure -> Log.warnf(failure, "Failed to load %d messages announced on channel %s", toLoad.size(), channel));
+        }
+    }
+}
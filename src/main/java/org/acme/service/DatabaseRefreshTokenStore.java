@@ -0,0 +1,55 @@
+package org.acme.service;
+
+import io.quarkus.arc.properties.UnlessBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+import org.acme.model.RefreshToken;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Каждая операция — короткая транзакция над {@code refresh_tokens} (или часть уже открытой).
+ */
+@ApplicationScoped
+@UnlessBuildProperty(name = "chat.refresh-tokens.store", stringValue = "memory", enableIfMissing = true)
+public class DatabaseRefreshTokenStore implements RefreshTokenStore {
+
+    @ConfigProperty(name = "chat.refresh-tokens.ttl", defaultValue = "7d")
+    Duration ttl;
+
+    @ConfigProperty(name = "chat.refresh-tokens.max-per-user", defaultValue = "10")
+    int maxPerUser;
+
+    @Override
+    @Transactional
+    public String issue(Long userId) {
+        String token = UUID.randomUUID().toString();
+        RefreshToken.deleteOldest(userId, maxPerUser - 1);
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.tokenHash = RefreshTokenStore.hash(token);
+        refreshToken.userId = userId;
+        refreshToken.expiryDate = LocalDateTime.now().plus(ttl);
+        refreshToken.persist();
+        return token;
+    }
+
+    @Override
+    @Transactional
+    public Long consume(String token) {
+        RefreshToken refreshToken = RefreshToken.findByTokenHash(RefreshTokenStore.hash(token));
+        // Параллельный consume ждёт блокировку строки и удаляет 0 строк
+        if (refreshToken == null || RefreshToken.delete("id", refreshToken.id) == 0) {
+            return null;
+        }
+        return refreshToken.expiryDate.isBefore(LocalDateTime.now()) ? null : refreshToken.userId;
+    }
+
+    @Override
+    @Transactional
+    public boolean revoke(String token) {
+        return RefreshToken.delete("tokenHash", RefreshTokenStore.hash(token)) > 0;
+    }
+}
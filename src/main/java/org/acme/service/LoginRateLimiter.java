@@ -0,0 +1,146 @@
+package org.acme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение частоты попыток входа по IP клиента и по email. Проверяется до поиска пользователя и BCrypt,
+ * поэтому подбор пароля не превращается в нагрузку на CPU.
+ * <p>
+ * Скользящее окно приближается двумя соседними фиксированными окнами: оценка = предыдущее * (1 - доля
+ * прошедшего времени текущего окна) + текущее. Состояние ключа упаковано в один {@code long}
+ * (номер окна | предыдущее | текущее) и обновляется CAS без блокировок. Число ключей ограничено:
+ * при переполнении сначала удаляются устаревшие записи, затем произвольные.
+ */
+@ApplicationScoped
+public class LoginRateLimiter {
+
+    private static final int COUNT_MASK = 0xFFFF;
+
+    @ConfigProperty(name = "chat.login-rate-limit.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "chat.login-rate-limit.window", defaultValue = "1m")
+    Duration window;
+
+    @ConfigProperty(name = "chat.login-rate-limit.ip-limit", defaultValue = "30")
+    int ipLimit;
+
+    @ConfigProperty(name = "chat.login-rate-limit.email-limit", defaultValue = "10")
+    int emailLimit;
+
+    @ConfigProperty(name = "chat.login-rate-limit.max-keys", defaultValue = "100000")
+    int maxKeys;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final ConcurrentHashMap<String, AtomicLong> ipWindows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> emailWindows = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private Counter throttledByIp;
+    private Counter throttledByEmail;
+
+    @PostConstruct
+    void init() {
+        // Каждая отклонённая попытка — это не выполненные поиск пользователя и проверка BCrypt (см. chat.password.hashing)
+        throttledByIp = Counter.builder("chat.auth.login.throttled")
+                .description("Попытки входа, отклонённые до проверки пароля")
+                .tag("key", "ip")
+                .register(registry);
+        throttledByEmail = Counter.builder("chat.auth.login.throttled")
+                .description("Попытки входа, отклонённые до проверки пароля")
+                .tag("key", "email")
+                .register(registry);
+        Gauge.builder("chat.auth.login.tracked.keys", this, limiter -> limiter.ipWindows.size() + limiter.emailWindows.size())
+                .description("Ключи, отслеживаемые ограничителем попыток входа")
+                .register(registry);
+    }
+
+    /**
+     * Учитывает попытку входа и возвращает {@code false}, если для IP или email лимит окна исчерпан.
+     */
+    public boolean tryAcquire(String clientIp, String email) {
+        if (!enabled) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (clientIp != null && !tryAcquire(ipWindows, clientIp, ipLimit, now)) {
+            throttledByIp.increment();
+            return false;
+        }
+        if (!tryAcquire(emailWindows, email.trim().toLowerCase(Locale.ROOT), emailLimit, now)) {
+            throttledByEmail.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public long retryAfterSeconds() {
+        return Math.max(1, window.toSeconds());
+    }
+
+    private boolean tryAcquire(ConcurrentHashMap<String, AtomicLong> windows, String key, int limit, long now) {
+        AtomicLong state = windows.get(key);
+        if (state == null) {
+            if (windows.size() >= maxKeys) {
+                evict(windows, now);
+            }
+            state = windows.computeIfAbsent(key, k -> new AtomicLong());
+        }
+
+        long windowMillis = window.toMillis();
+        long currentWindow = now / windowMillis;
+        double elapsedFraction = (now % windowMillis) / (double) windowMillis;
+        while (true) {
+            long packed = state.get();
+            long storedWindow = packed >>> 32;
+            long previous = (packed >>> 16) & COUNT_MASK;
+            long current = packed & COUNT_MASK;
+            if (storedWindow != currentWindow) {
+                previous = storedWindow == currentWindow - 1 ? current : 0;
+                current = 0;
+            }
+            if (previous * (1 - elapsedFraction) + current >= limit) {
+                return false;
+            }
+            long next = (currentWindow << 32) | (previous << 16) | Math.min(current + 1, COUNT_MASK);
+            if (state.compareAndSet(packed, next)) {
+                return true;
+            }
+        }
+    }
+
+    private void evict(ConcurrentHashMap<String, AtomicLong> windows, long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long expiredBefore = now / window.toMillis() - 1;
+            windows.values().removeIf(state -> (state.get() >>> 32) < expiredBefore);
+            // Если все ключи активны (например, распределённая атака), освобождаем десятую часть
+            int excess = windows.size() - maxKeys + maxKeys / 10;
+            Iterator<Map.Entry<String, AtomicLong>> iterator = windows.entrySet().iterator();
+            while (excess-- > 0 && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
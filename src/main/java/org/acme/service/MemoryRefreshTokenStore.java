@@ -0,0 +1,262 @@
+package org.acme.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.acme.model.RefreshToken;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Refresh-токены в памяти: выдача, обновление и выход не обращаются к базе. Изменения копятся и раз в
+ * {@code chat.refresh-tokens.flush-interval} записываются в {@code refresh_tokens} одной транзакцией
+ * (вставки — JDBC-батчами, удаления — пачками {@code IN}); токен, выданный и погашенный между записями,
+ * в базу не попадает вовсе. При старте таблица загружается в память целиком.
+ * <p>
+ * Токены, выданные за последний интервал до аварийной остановки, теряются: пользователю придётся войти заново.
+ * Память каждого узла своя, поэтому хранилище подходит для одного экземпляра (или липкой маршрутизации
+ * {@code /auth} по токену); в кластере используйте {@link DatabaseRefreshTokenStore}.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "chat.refresh-tokens.store", stringValue = "memory")
+public class MemoryRefreshTokenStore implements RefreshTokenStore {
+
+    static final int DELETE_CHUNK_SIZE = 1000;
+    static final int LOAD_FETCH_SIZE = 1000;
+
+    @ConfigProperty(name = "chat.refresh-tokens.ttl", defaultValue = "7d")
+    Duration ttl;
+
+    @ConfigProperty(name = "chat.refresh-tokens.max-per-user", defaultValue = "10")
+    int maxPerUser;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<String, Entry> tokens = new ConcurrentHashMap<>();
+    private final Map<String, Entry> pendingInserts = new ConcurrentHashMap<>();
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+    // Хеши токенов пользователя в порядке выдачи (срок жизни у всех одинаковый, первый — самый старый).
+    // Меняется только внутри compute по ключу пользователя
+    private final Map<Long, Set<String>> byUser = new ConcurrentHashMap<>();
+    // Записи идут строго по очереди: иначе удаление токена могло бы закоммититься раньше его вставки.
+    // Не synchronized, чтобы JDBC под блокировкой не закреплял виртуальный поток за несущим
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    static final class Entry {
+        final Long userId;
+        final LocalDateTime expiryDate;
+
+        Entry(Long userId, LocalDateTime expiryDate) {
+            this.userId = userId;
+            this.expiryDate = expiryDate;
+        }
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        registry.gaugeMapSize("chat.refresh_tokens.memory.size", List.of(), tokens);
+        registry.gaugeMapSize("chat.refresh_tokens.memory.pending_inserts", List.of(), pendingInserts);
+        registry.gaugeCollectionSize("chat.refresh_tokens.memory.pending_deletes", List.of(), pendingDeletes);
+        reload();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        flush();
+    }
+
+    @Override
+    public String issue(Long userId) {
+        String token = UUID.randomUUID().toString();
+        String hash = RefreshTokenStore.hash(token);
+        Entry entry = new Entry(userId, LocalDateTime.now().plus(ttl));
+        tokens.put(hash, entry);
+        pendingInserts.put(hash, entry);
+
+        List<String> evicted = new ArrayList<>();
+        byUser.compute(userId, (id, hashes) -> {
+            Set<String> userHashes = hashes != null ? hashes : new LinkedHashSet<>();
+            userHashes.add(hash);
+            Iterator<String> oldest = userHashes.iterator();
+            while (userHashes.size() > maxPerUser) {
+                evicted.add(oldest.next());
+                oldest.remove();
+            }
+            return userHashes;
+        });
+        for (String evictedHash : evicted) {
+            if (tokens.remove(evictedHash) != null) {
+                forget(evictedHash);
+            }
+        }
+        return token;
+    }
+
+    @Override
+    public Long consume(String token) {
+        String hash = RefreshTokenStore.hash(token);
+        Entry entry = tokens.remove(hash);
+        if (entry == null) {
+            return null;
+        }
+        forget(hash);
+        untrack(entry.userId, hash);
+        return entry.expiryDate.isBefore(LocalDateTime.now()) ? null : entry.userId;
+    }
+
+    @Override
+    public boolean revoke(String token) {
+        String hash = RefreshTokenStore.hash(token);
+        Entry entry = tokens.remove(hash);
+        if (entry == null) {
+            return false;
+        }
+        forget(hash);
+        untrack(entry.userId, hash);
+        return true;
+    }
+
+    /**
+     * Истёкшие строки таблицы удаляет {@link RefreshTokenPurger}, здесь они только выбрасываются из памяти.
+     */
+    @Override
+    public void evictExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int evicted = 0;
+        for (Map.Entry<String, Entry> token : tokens.entrySet()) {
+            if (token.getValue().expiryDate.isBefore(now) && tokens.remove(token.getKey(), token.getValue())) {
+                pendingInserts.remove(token.getKey());
+                untrack(token.getValue().userId, token.getKey());
+                evicted++;
+            }
+        }
+        Log.debugf("Evicted %d expired refresh tokens from memory", evicted);
+    }
+
+    private void untrack(Long userId, String hash) {
+        byUser.computeIfPresent(userId, (id, hashes) -> {
+            hashes.remove(hash);
+            return hashes.isEmpty() ? null : hashes;
+        });
+    }
+
+    private void forget(String hash) {
+        // Ещё не записанный токен достаточно не записывать; ровно один из forget и flush забирает его из очереди
+        if (pendingInserts.remove(hash) == null) {
+            pendingDeletes.add(hash);
+        }
+    }
+
+    /**
+     * Записывает накопленные изменения. При ошибке они возвращаются в очередь до следующего запуска.
+     */
+    @Scheduled(every = "${chat.refresh-tokens.flush-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void flush() {
+        writeLock.lock();
+        try {
+            write();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write() {
+        List<RefreshToken> inserts = new ArrayList<>();
+        for (String hash : pendingInserts.keySet()) {
+            Entry entry = pendingInserts.remove(hash);
+            if (entry != null) {
+                RefreshToken refreshToken = new RefreshToken();
+                refreshToken.tokenHash = hash;
+                refreshToken.userId = entry.userId;
+                refreshToken.expiryDate = entry.expiryDate;
+                inserts.add(refreshToken);
+            }
+        }
+        List<String> deletes = new ArrayList<>();
+        for (String hash : pendingDeletes) {
+            if (pendingDeletes.remove(hash)) {
+                deletes.add(hash);
+            }
+        }
+        if (inserts.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                RefreshToken.persist(inserts);
+                for (int from = 0; from < deletes.size(); from += DELETE_CHUNK_SIZE) {
+                    RefreshToken.delete("tokenHash in ?1", deletes.subList(from, Math.min(from + DELETE_CHUNK_SIZE, deletes.size())));
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.warnf(e, "Failed to write %d new and %d removed refresh tokens, will retry", inserts.size(), deletes.size());
+            for (RefreshToken refreshToken : inserts) {
+                Entry entry = tokens.get(refreshToken.tokenHash);
+                if (entry != null) {
+                    pendingInserts.putIfAbsent(refreshToken.tokenHash, entry);
+                }
+            }
+            pendingDeletes.addAll(deletes);
+        }
+    }
+
+    /**
+     * Записывает накопленное и заменяет содержимое памяти действующими токенами из базы.
+     * Вызывается при старте, до приёма запросов.
+     */
+    public void reload() {
+        writeLock.lock();
+        try {
+            write();
+            load();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void load() {
+        Map<String, Entry> loaded = new LinkedHashMap<>();
+        QuarkusTransaction.requiringNew().run(() -> {
+            Session session = RefreshToken.getEntityManager().unwrap(Session.class);
+            try (ScrollableResults<Object[]> rows = session.createSelectionQuery(
+                            "SELECT r.tokenHash, r.userId, r.expiryDate FROM RefreshToken r WHERE r.expiryDate > ?1 ORDER BY r.expiryDate", Object[].class)
+                    .setParameter(1, LocalDateTime.now())
+                    .setFetchSize(LOAD_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (rows.next()) {
+                    Object[] row = rows.get();
+                    loaded.put((String) row[0], new Entry((Long) row[1], (LocalDateTime) row[2]));
+                }
+            }
+        });
+        tokens.clear();
+        byUser.clear();
+        tokens.putAll(loaded);
+        // Строки шли по возрастанию срока, так что в наборах пользователей старые токены окажутся первыми
+        loaded.forEach((hash, entry) -> byUser.computeIfAbsent(entry.userId, id -> new LinkedHashSet<>()).add(hash));
+        Log.infof("Loaded %d refresh tokens into memory", loaded.size());
+    }
+}
@@ -0,0 +1,16 @@
+package org.acme.service;
+
+import org.acme.dto.MessageDTO;
+
+/**
+ * CDI-событие о новом сообщении. Публикуется из {@link org.acme.repository.MessageRepository#create}
+ * и доставляется наблюдателям с {@code during = TransactionPhase.AFTER_SUCCESS}, то есть только после коммита.
+ */
+public class MessageCreatedEvent {
+
+    public final MessageDTO.MessageResponse message;
+
+    public MessageCreatedEvent(MessageDTO.MessageResponse message) {
+        this.message = message;
+    }
+}
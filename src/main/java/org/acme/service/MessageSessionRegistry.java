@@ -0,0 +1,170 @@
+package org.acme.service;
+
+import io.quarkus.logging.Log;
+import io.quarkus.websockets.next.CloseReason;
+import io.quarkus.websockets.next.WebSocketConnection;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import org.acme.dto.MessageDTO;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реестр WebSocket-подключений этого узла, сгруппированных по ID пользователя.
+ * Каждое новое сообщение после коммита отправляется всем подключениям отправителя и получателя.
+ */
+@ApplicationScoped
+public class MessageSessionRegistry {
+
+    /**
+     * Код закрытия для клиентов, которые не успевают читать: клиент должен переподключиться
+     * с параметром {@code after} и догрузить пропущенное.
+     */
+    public static final CloseReason RESYNC_REQUIRED = new CloseReason(4000, "Resync required");
+
+    private static final CloseReason DELIVERY_FAILED = new CloseReason(1011, "Delivery failed");
+
+    @ConfigProperty(name = "chat.websocket.send-queue-size", defaultValue = "256")
+    int sendQueueSize;
+
+    private final ConcurrentHashMap<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Регистрирует подключение. Новые сообщения копятся в очереди подписчика и не отправляются,
+     * пока не вызван {@link Subscriber#replay(List)}.
+     */
+    public Subscriber register(Long userId, WebSocketConnection connection) {
+        Subscriber subscriber = new Subscriber(connection, sendQueueSize);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        return subscriber;
+    }
+
+    public void unregister(Long userId, WebSocketConnection connection) {
+        subscribers.computeIfPresent(userId, (id, set) -> {
+            set.removeIf(subscriber -> subscriber.connection.id().equals(connection.id()));
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    public boolean isConnected(Long userId) {
+        return subscribers.containsKey(userId);
+    }
+
+    public int connectionCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    public void deliver(MessageDTO.MessageResponse message) {
+        deliverTo(message.recipientId, message);
+        if (!message.senderId.equals(message.recipientId)) {
+            deliverTo(message.senderId, message);
+        }
+    }
+
+    void onMessageCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageCreatedEvent event) {
+        deliver(event.message);
+    }
+
+    private void deliverTo(Long userId, MessageDTO.MessageResponse message) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> subscriber.offer(message));
+        }
+    }
+
+    /**
+     * Ограниченная очередь исходящих сообщений одного подключения. В сокет пишется не более одного
+     * сообщения за раз; если клиент отстал больше чем на размер очереди, подключение закрывается
+     * с {@link #RESYNC_REQUIRED}, чтобы медленный клиент не расходовал память узла.
+     * <p>
+     * Пропущенные при переподключении сообщения в эту очередь не попадают: {@link #replay(List)} отправляет их
+     * с ожиданием каждой записи, а очередь на это время только накапливает новые.
+     */
+    public static class Subscriber {
+
+        private final WebSocketConnection connection;
+        private final int capacity;
+        private final Queue<MessageDTO.MessageResponse> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean replaying = true;
+
+        Subscriber(WebSocketConnection connection, int capacity) {
+            this.connection = connection;
+            this.capacity = capacity;
+        }
+
+        public void offer(MessageDTO.MessageResponse message) {
+            if (closed.get()) {
+                return;
+            }
+            if (pending.incrementAndGet() > capacity) {
+                pending.decrementAndGet();
+                close(RESYNC_REQUIRED);
+                return;
+            }
+            queue.add(message);
+            drain();
+        }
+
+        /**
+         * Отправляет пропущенные сообщения, дожидаясь записи каждого, и затем начинает отправку новых.
+         * Блокирует вызывающий поток; вызывается один раз сразу после {@link #register}, в том числе с пустым списком.
+         */
+        public void replay(List<MessageDTO.MessageResponse> missed) {
+            try {
+                for (MessageDTO.MessageResponse message : missed) {
+                    if (closed.get()) {
+                        return;
+                    }
+                    connection.sendTextAndAwait(message);
+                }
+            } catch (RuntimeException e) {
+                Log.debugf(e, "Failed to replay messages to connection %s", connection.id());
+                close(DELIVERY_FAILED);
+                return;
+            }
+            replaying = false;
+            drain();
+        }
+
+        private void drain() {
+            while (!replaying && !closed.get() && !queue.isEmpty() && sending.compareAndSet(false, true)) {
+                MessageDTO.MessageResponse next = queue.poll();
+                if (next == null) {
+                    sending.set(false);
+                    continue;
+                }
+                connection.sendText(next).subscribe().with(
+                        ignored -> {
+                            pending.decrementAndGet();
+                            sending.set(false);
+                            drain();
+                        },
+                        failure -> {
+                            Log.debugf(failure, "Failed to push message to connection %s", connection.id());
+                            close(DELIVERY_FAILED);
+                        });
+                return;
+            }
+        }
+
+        private void close(CloseReason reason) {
+            if (closed.compareAndSet(false, true)) {
+                queue.clear();
+                connection.close(reason).subscribe().with(
+                        ignored -> { },
+                        failure -> Log.debugf(failure, "Failed to close connection %s", connection.id()));
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.acme.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.acme.dto.MessageDTO;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Пробуждение long-polling запросов {@code GET /messages?wait=...} на этом узле.
+ * Все ожидающие запросы одного пользователя делят один {@link CompletableFuture}: новое сообщение после коммита
+ * завершает его у отправителя и получателя, и сигнал снимается. Ожидающий не держит ни потока платформы,
+ * ни соединения с базой: блокирующий ресурс паркует виртуальный поток, реактивный подписывается на future.
+ * Сообщения с других узлов будит {@link ClusterMessageBus}.
+ * <p>
+ * Регистрируйтесь до запроса в базу: сообщение, закоммиченное между запросом и ожиданием, иначе будет пропущено.
+ */
+@ApplicationScoped
+public class MessageWaiters {
+
+    private static final Pattern WAIT = Pattern.compile("(\\d{1,6})(ms|s)?");
+
+    @ConfigProperty(name = "chat.long-poll.max-wait", defaultValue = "60s")
+    Duration maxWait;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final ConcurrentHashMap<Long, Signal> signals = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        registry.gauge("chat.messages.long_poll.waiters", waiting);
+    }
+
+    /**
+     * Разбирает параметр {@code wait}: секунды ({@code 30}, {@code 30s}) или миллисекунды ({@code 500ms}).
+     *
+     * @throws IllegalArgumentException если формат неверный или ожидание больше {@code chat.long-poll.max-wait}
+     */
+    public Duration parseWait(String wait) {
+        if (wait == null || wait.isBlank()) {
+            return Duration.ZERO;
+        }
+        Matcher matcher = WAIT.matcher(wait.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid wait: " + wait);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        Duration duration = "ms".equals(matcher.group(2)) ? Duration.ofMillis(amount) : Duration.ofSeconds(amount);
+        if (duration.compareTo(maxWait) > 0) {
+            throw new IllegalArgumentException("Wait exceeds " + maxWait + ": " + wait);
+        }
+        return duration;
+    }
+
+    public Duration maxWait() {
+        return maxWait;
+    }
+
+    public Waiter register(Long userId) {
+        Signal signal = signals.compute(userId, (id, current) -> {
+            Signal registered = current != null ? current : new Signal();
+            registered.waiters++;
+            return registered;
+        });
+        waiting.incrementAndGet();
+        return new Waiter(userId, signal);
+    }
+
+    public void wake(MessageDTO.MessageResponse message) {
+        wake(message.recipientId);
+        if (!message.senderId.equals(message.recipientId)) {
+            wake(message.senderId);
+        }
+    }
+
+    void onMessageCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageCreatedEvent event) {
+        wake(event.message);
+    }
+
+    public void wake(Long userId) {
+        Signal signal = signals.remove(userId);
+        if (signal != null) {
+            signal.future.complete(null);
+        }
+    }
+
+    private static final class Signal {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        // Изменяется только внутри compute/computeIfPresent по ключу пользователя
+        int waiters;
+    }
+
+    /**
+     * Регистрация одного запроса. Закрывайте её после ответа, даже если сигнал не пришёл:
+     * последний закрытый ожидающий убирает сигнал пользователя из карты.
+     */
+    public final class Waiter implements AutoCloseable {
+
+        private final Long userId;
+        private final Signal signal;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Waiter(Long userId, Signal signal) {
+            this.userId = userId;
+            this.signal = signal;
+        }
+
+        /**
+         * Сигнал для неблокирующих подписчиков. Отмена полученной стадии (например, по таймауту Mutiny)
+         * не затрагивает общий future остальных ожидающих.
+         */
+        public CompletionStage<Void> signal() {
+            return signal.future.minimalCompletionStage();
+        }
+
+        /**
+         * Ждёт сигнала не дольше {@code timeout}. Рассчитано на виртуальный поток: парковка не занимает несущий поток.
+         *
+         * @return {@code true}, если пришло новое сообщение
+         */
+        public boolean await(Duration timeout) {
+            try {
+                signal.future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException | ExecutionException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            waiting.decrementAndGet();
+            // Сигнал мог уже сработать и смениться новым — его счётчик не трогаем
+            signals.computeIfPresent(userId, (id, current) -> current != signal || --current.waiters > 0 ? current : null);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.acme.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+/**
+ * Гистограммы для HTTP-запросов (http.server.requests — таймер на каждый метод ресурса с тегами
+ * method, uri-шаблон, status, outcome) и для всех собственных таймеров {@code chat.*}.
+ * Квантили считает Prometheus по бакетам, поэтому p99 корректно агрегируется между инстансами.
+ */
+@Singleton
+public class MetricsCustomizer {
+
+    @Produces
+    @Singleton
+    public MeterFilter percentileHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getType() == Meter.Type.TIMER
+                        && (id.getName().equals("http.server.requests") || id.getName().startsWith("chat."))) {
+                    return DistributionStatisticConfig.builder()
+                            .percentilesHistogram(true)
+                            .build()
+                            .merge(config);
+                }
+                return config;
+            }
+        };
+    }
+}
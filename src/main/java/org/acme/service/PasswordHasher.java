@@ -0,0 +1,130 @@
+package org.acme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.elytron.security.common.BcryptUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Хеширование и проверка паролей BCrypt на отдельном пуле фиксированного размера с ограниченной очередью.
+ * Одна операция стоит ~100 мс CPU, поэтому при всплеске логинов лишние запросы сразу получают 503,
+ * а не занимают рабочие потоки и соединения с БД. Вызывать вне транзакции.
+ */
+@ApplicationScoped
+public class PasswordHasher {
+
+    @ConfigProperty(name = "chat.password-hashing.threads")
+    Optional<Integer> threads;
+
+    @ConfigProperty(name = "chat.password-hashing.queue-size", defaultValue = "256")
+    int queueSize;
+
+    @ConfigProperty(name = "chat.password-hashing.timeout", defaultValue = "5s")
+    Duration timeout;
+
+    @Inject
+    MeterRegistry registry;
+
+    private ThreadPoolExecutor executor;
+    private Timer hashTimer;
+    private Timer verifyTimer;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads.orElse(Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        hashTimer = Timer.builder("chat.password.hashing")
+                .description("Время вычисления BCrypt")
+                .tag("operation", "hash")
+                .publishPercentileHistogram()
+                .register(registry);
+        verifyTimer = Timer.builder("chat.password.hashing")
+                .description("Время вычисления BCrypt")
+                .tag("operation", "verify")
+                .publishPercentileHistogram()
+                .register(registry);
+        rejected = Counter.builder("chat.password.hashing.rejected")
+                .description("Операции, отклонённые из-за переполненной очереди или таймаута")
+                .register(registry);
+        Gauge.builder("chat.password.hashing.queue", executor, pool -> pool.getQueue().size())
+                .description("Операции BCrypt, ожидающие свободного потока")
+                .register(registry);
+        Gauge.builder("chat.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Операции BCrypt, выполняющиеся сейчас")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String hash(String password) {
+        return run(() -> BcryptUtil.bcryptHash(password), hashTimer);
+    }
+
+    public boolean matches(String password, String passwordHash) {
+        return run(() -> BcryptUtil.matches(password, passwordHash), verifyTimer);
+    }
+
+    private <T> T run(Callable<T> task, Timer timer) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            throw overloaded();
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw overloaded();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private ServiceUnavailableException overloaded() {
+        rejected.increment();
+        return new ServiceUnavailableException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", 1)
+                .entity("{\"error\":\"Сервер перегружен, повторите попытку позже\"}")
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+}
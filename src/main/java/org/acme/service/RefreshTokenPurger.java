@@ -0,0 +1,69 @@
+package org.acme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.acme.model.RefreshToken;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.LocalDateTime;
+
+/**
+ * Периодически удаляет истёкшие refresh-токены. Каждая пачка — отдельная короткая транзакция,
+ * так что блокировки держатся не дольше одной пачки, а refresh и выход в это время не ждут.
+ * За один запуск удаляется не больше {@code batch-size * max-batches} строк; остаток дочистит следующий.
+ * Запуски на нескольких узлах не мешают друг другу ({@code FOR UPDATE SKIP LOCKED}).
+ */
+@ApplicationScoped
+public class RefreshTokenPurger {
+
+    @ConfigProperty(name = "chat.refresh-tokens.purge.batch-size", defaultValue = "1000")
+    int batchSize;
+
+    @ConfigProperty(name = "chat.refresh-tokens.purge.max-batches", defaultValue = "100")
+    int maxBatches;
+
+    @Inject
+    RefreshTokenStore refreshTokenStore;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Counter purged;
+
+    @PostConstruct
+    void init() {
+        purged = registry.counter("chat.refresh_tokens.purged");
+    }
+
+    @Scheduled(every = "${chat.refresh-tokens.purge.every:10m}", delayed = "1m", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledPurge() {
+        purge();
+    }
+
+    /**
+     * @return число удалённых строк
+     */
+    public int purge() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int deleted = QuarkusTransaction.requiringNew().call(() -> RefreshToken.deleteExpired(now, batchSize));
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        refreshTokenStore.evictExpired();
+        purged.increment(total);
+        if (total > 0) {
+            Log.infof("Purged %d expired refresh tokens", total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,51 @@
+package org.acme.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Хранилище refresh-токенов. Реализация выбирается при сборке свойством {@code chat.refresh-tokens.store}:
+ * {@code db} (по умолчанию) — {@link DatabaseRefreshTokenStore}, {@code memory} — {@link MemoryRefreshTokenStore}.
+ * Токены хранятся и ищутся только по {@link #hash}.
+ */
+public interface RefreshTokenStore {
+
+    /**
+     * Выдаёт новый токен пользователю. Если у пользователя уже {@code chat.refresh-tokens.max-per-user}
+     * токенов, самые старые из них отзываются.
+     */
+    String issue(Long userId);
+
+    /**
+     * Погашает токен: после вызова он недействителен. Из двух одновременных вызовов с одним токеном
+     * пользователя получает только один.
+     *
+     * @return id пользователя или {@code null}, если токен неизвестен или истёк
+     */
+    Long consume(String token);
+
+    /**
+     * Удаляет токен при выходе.
+     *
+     * @return {@code false}, если такого токена не было
+     */
+    boolean revoke(String token);
+
+    /**
+     * Забывает истёкшие токены, которые хранилище держит помимо {@code refresh_tokens};
+     * саму таблицу очищает {@link RefreshTokenPurger}.
+     */
+    default void evictExpired() {
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
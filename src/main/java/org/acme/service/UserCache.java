@@ -0,0 +1,108 @@
+package org.acme.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.arc.Arc;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.acme.model.User;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кеш активных пользователей перед {@code User.findById}: неизменяемые {@link UserSnapshot} по id.
+ * Отсутствующие пользователи не кешируются.
+ * <p>
+ * Поиск по email и username остаётся в базе: он нужен только проверкам уникальности и пароля,
+ * а им снимок из кеша не подходит. После коммита, изменившего пользователя,
+ * вызывайте {@link #invalidate(Long)}: инвалидация из {@link EntityListener} происходит при flush,
+ * до коммита, и параллельный запрос может успеть закешировать старую строку.
+ */
+@ApplicationScoped
+public class UserCache {
+
+    @ConfigProperty(name = "chat.user-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "chat.user-cache.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    @ConfigProperty(name = "chat.user-cache.expire-after-write", defaultValue = "5m")
+    Duration expireAfterWrite;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Cache<Long, UserSnapshot> byId;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        byId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, byId, "users");
+    }
+
+    public UserSnapshot findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        if (!enabled) {
+            return UserSnapshot.of(User.findById(id));
+        }
+        UserSnapshot cached = byId.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        // Загружаем вне Cache.get(key, loader): загрузчик выполняется под блокировкой ConcurrentHashMap,
+        // и JDBC-запрос внутри неё закрепил бы виртуальный поток за несущим
+        long seenInvalidations = invalidations.get();
+        UserSnapshot loaded = UserSnapshot.of(User.findById(id));
+        if (loaded != null) {
+            byId.put(id, loaded);
+            // Пока шёл запрос, кто-то мог закоммитить изменение: такой снимок мог устареть, не храним его
+            if (invalidations.get() != seenInvalidations) {
+                byId.invalidate(id);
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        byId.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        byId.invalidateAll();
+    }
+
+    /**
+     * Сбрасывает кеш при любом изменении сущности {@link User} через Hibernate (регистрация, PATCH профиля,
+     * {@link User#deactivate()}). Массовые update/delete в обход сущностей сюда не попадают.
+     */
+    public static class EntityListener {
+
+        @PostPersist
+        @PostUpdate
+        @PostRemove
+        void onChange(User user) {
+            Arc.container().instance(UserCache.class).get().invalidate(user.id);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.acme.service;
+
+import org.acme.model.User;
+
+/**
+ * Неизменяемая копия активного пользователя для {@link UserCache}. Хеш пароля намеренно не копируется:
+ * проверка пароля всегда читает сущность из базы.
+ */
+public final class UserSnapshot {
+
+    public final Long id;
+    public final String email;
+    public final String username;
+    public final String roles;
+    public final String birthdate;
+    public final String firstName;
+    public final String lastName;
+    public final String photoUrl;
+    public final int profileVersion;
+
+    private UserSnapshot(User user) {
+        this.id = user.id;
+        this.email = user.email;
+        this.username = user.username;
+        this.roles = user.roles;
+        this.birthdate = user.birthdate;
+        this.firstName = user.firstName;
+        this.lastName = user.lastName;
+        this.photoUrl = user.photoUrl;
+        this.profileVersion = user.profileVersion;
+    }
+
+    public static UserSnapshot of(User user) {
+        return user == null ? null : new UserSnapshot(user);
+    }
+}
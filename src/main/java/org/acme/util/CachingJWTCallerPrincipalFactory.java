@@ -0,0 +1,173 @@
+package org.acme.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.arc.Arc;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.jwt.auth.principal.DefaultJWTCallerPrincipalFactory;
+import io.smallrye.jwt.auth.principal.JWTAuthContextInfo;
+import io.smallrye.jwt.auth.principal.JWTCallerPrincipal;
+import io.smallrye.jwt.auth.principal.JWTCallerPrincipalFactory;
+import io.smallrye.jwt.auth.principal.ParseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.acme.model.User;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кеш проверенных access-токенов перед проверкой подписи smallrye-jwt. Клиент, опрашивающий {@code /messages},
+ * предъявляет один и тот же токен сотни раз за его жизнь; повторно разбирать его и проверять подпись незачем.
+ * <p>
+ * Ключ — SHA-256 от токена целиком, так что любой изменённый байт (в том числе подписи) — промах и полная проверка.
+ * Запись живёт до {@code exp} токена и используется только с тем же {@link JWTAuthContextInfo}, с которым проверялась.
+ * <p>
+ * Отзыв: {@link #revokeAll(Long)} отклоняет все токены пользователя, выпущенные не позже момента отзыва, —
+ * и из кеша, и после полной проверки. Вызывается при деактивации или удалении пользователя ({@link EntityListener}).
+ * Отметки об отзыве хранятся в памяти узла и только {@code ACCESS_TOKEN_LIFETIME_SECONDS}: более старые
+ * токены к тому времени истекли сами. Размером они не ограничены и не вытесняются, иначе вытесненный отзыв
+ * снова пропустил бы токены пользователя; устаревшие отметки удаляются раз в минуту.
+ */
+@ApplicationScoped
+@Alternative
+@Priority(1)
+public class CachingJWTCallerPrincipalFactory extends JWTCallerPrincipalFactory {
+
+    @ConfigProperty(name = "chat.jwt.verified-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "chat.jwt.verified-cache.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final JWTCallerPrincipalFactory delegate = new DefaultJWTCallerPrincipalFactory();
+    private Cache<String, Verified> verified;
+    private final ConcurrentHashMap<String, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        verified = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String key, Verified value, long currentTime) {
+                        long secondsLeft = value.principal.getExpirationTime() - Instant.now().getEpochSecond();
+                        return Duration.ofSeconds(Math.max(secondsLeft, 0)).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Verified value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Verified value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, verified, "verified_tokens");
+    }
+
+    @Override
+    public JWTCallerPrincipal parse(String token, JWTAuthContextInfo authContextInfo) throws ParseException {
+        if (!enabled) {
+            return checkNotRevoked(delegate.parse(token, authContextInfo));
+        }
+        String key = hash(token);
+        Verified cached = verified.getIfPresent(key);
+        if (cached != null && cached.authContextInfo == authContextInfo) {
+            return checkNotRevoked(cached.principal);
+        }
+        JWTCallerPrincipal principal = checkNotRevoked(delegate.parse(token, authContextInfo));
+        verified.put(key, new Verified(principal, authContextInfo));
+        return principal;
+    }
+
+    /**
+     * Отзывает все access-токены пользователя, выпущенные до этого момента включительно.
+     */
+    public void revokeAll(Long userId) {
+        revokedBefore.put(userId.toString(), Instant.now().getEpochSecond());
+    }
+
+    /**
+     * Удаляет отметки старше {@code ACCESS_TOKEN_LIFETIME_SECONDS}: все токены, выпущенные до них, уже истекли.
+     */
+    @Scheduled(every = "1m", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void purgeExpiredRevocations() {
+        long expiredBefore = Instant.now().getEpochSecond() - TokenUtils.ACCESS_TOKEN_LIFETIME_SECONDS;
+        revokedBefore.values().removeIf(revokedAt -> revokedAt < expiredBefore);
+    }
+
+    private JWTCallerPrincipal checkNotRevoked(JWTCallerPrincipal principal) throws ParseException {
+        if (principal.getSubject() == null) {
+            return principal;
+        }
+        Long before = revokedBefore.get(principal.getSubject());
+        if (before != null && principal.getIssuedAtTime() <= before) {
+            throw new ParseException("JWT has been revoked");
+        }
+        return principal;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Verified {
+        final JWTCallerPrincipal principal;
+        final JWTAuthContextInfo authContextInfo;
+
+        Verified(JWTCallerPrincipal principal, JWTAuthContextInfo authContextInfo) {
+            this.principal = principal;
+            this.authContextInfo = authContextInfo;
+        }
+    }
+
+    /**
+     * Отзывает токены пользователя, деактивированного ({@link User#deactivate()}) или удалённого через Hibernate.
+     * Срабатывает при flush, до коммита: если транзакция откатится, токены всё равно останутся отозванными.
+     */
+    public static class EntityListener {
+
+        @PostUpdate
+        void onUpdate(User user) {
+            if (!user.active) {
+                revoke(user);
+            }
+        }
+
+        @PostRemove
+        void onRemove(User user) {
+            revoke(user);
+        }
+
+        private static void revoke(User user) {
+            Arc.container().instance(CachingJWTCallerPrincipalFactory.class).get().revokeAll(user.id);
+        }
+    }
+}
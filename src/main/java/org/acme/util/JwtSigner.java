@@ -0,0 +1,241 @@
+package org.acme.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.acme.service.UserSnapshot;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.jwt.Claims;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Подпись access-токенов без построителя {@code Jwt}: ключ читается и разбирается один раз, заголовок
+ * закодирован заранее, имена claims и массив groups для каждой строки ролей сериализуются один раз,
+ * а инициализированные ключом {@link Signature} переиспользуются.
+ * <p>
+ * Алгоритм берётся из {@code mp.jwt.verify.publickey.algorithm}, чтобы подпись и проверка не разошлись:
+ * RS256 (по умолчанию) или ES256 с ключом P-256 — подпись 64 байта вместо 256 и заметно более быстрая проверка.
+ * При {@code chat.jwt.compact=true} в токене остаются только sub, groups и {@code pv} — версия профиля
+ * на момент выпуска; сам профиль клиент берёт из {@code GET /profile/{userId}} (отдаётся из {@code UserCache}),
+ * когда {@code pv} меняется. Без compact токен совпадает с тем, что выпускал {@code Jwt.issuer(...)...sign()}.
+ */
+@ApplicationScoped
+public class JwtSigner {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private static final SerializableString ISS = new SerializedString(Claims.iss.name());
+    private static final SerializableString SUB = new SerializedString(Claims.sub.name());
+    private static final SerializableString GROUPS = new SerializedString(Claims.groups.name());
+    private static final SerializableString BIRTHDATE = new SerializedString(Claims.birthdate.name());
+    private static final SerializableString EMAIL = new SerializedString("email");
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString FIRST_NAME = new SerializedString("firstName");
+    private static final SerializableString LAST_NAME = new SerializedString("lastName");
+    private static final SerializableString IAT = new SerializedString(Claims.iat.name());
+    private static final SerializableString EXP = new SerializedString(Claims.exp.name());
+    private static final SerializableString JTI = new SerializedString(Claims.jti.name());
+    private static final SerializableString PROFILE_VERSION = new SerializedString("pv");
+
+    @ConfigProperty(name = "mp.jwt.verify.issuer")
+    String issuer;
+
+    @ConfigProperty(name = "smallrye.jwt.sign.key.location")
+    String keyLocation;
+
+    @ConfigProperty(name = "mp.jwt.verify.publickey.algorithm", defaultValue = "RS256")
+    String algorithm;
+
+    @ConfigProperty(name = "chat.jwt.compact", defaultValue = "false")
+    boolean compact;
+
+    private PrivateKey privateKey;
+    private String signatureAlgorithm;
+    private byte[] encodedHeader;
+    private String issuerJson;
+    private final Map<String, String> groupsJson = new ConcurrentHashMap<>();
+    // Не ThreadLocal: запросы идут в виртуальных потоках, и у каждого был бы свой, ни разу не переиспользованный экземпляр
+    private final Queue<Signature> signatures = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    void init() {
+        String keyAlgorithm;
+        switch (algorithm) {
+            case "RS256" -> {
+                keyAlgorithm = "RSA";
+                signatureAlgorithm = "SHA256withRSA";
+            }
+            case "ES256" -> {
+                keyAlgorithm = "EC";
+                // JWS требует подпись ECDSA как r||s (RFC 7518, 3.4), а не DER, который выдаёт SHA256withECDSA
+                signatureAlgorithm = "SHA256withECDSAinP1363Format";
+            }
+            default -> throw new IllegalStateException("Unsupported JWT signature algorithm: " + algorithm);
+        }
+        try {
+            privateKey = KeyFactory.getInstance(keyAlgorithm).generatePrivate(new PKCS8EncodedKeySpec(readPem(keyLocation)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot load " + algorithm + " JWT signing key from " + keyLocation, e);
+        }
+        String header = "{\"alg\":\"" + algorithm + "\",\"typ\":\"JWT\"}";
+        encodedHeader = BASE64URL.encode(header.getBytes(StandardCharsets.UTF_8));
+        issuerJson = toJson(issuer);
+    }
+
+    /**
+     * @param lifetimeSeconds срок жизни от момента подписи ({@code exp - iat})
+     */
+    public String sign(UserSnapshot user, long lifetimeSeconds) {
+        long issuedAt = Instant.now().getEpochSecond();
+        byte[] payload = BASE64URL.encode(payload(user, issuedAt, issuedAt + lifetimeSeconds));
+
+        byte[] signingInput = new byte[encodedHeader.length + 1 + payload.length];
+        System.arraycopy(encodedHeader, 0, signingInput, 0, encodedHeader.length);
+        signingInput[encodedHeader.length] = '.';
+        System.arraycopy(payload, 0, signingInput, encodedHeader.length + 1, payload.length);
+
+        Signature signature = signatures.poll();
+        try {
+            if (signature == null) {
+                signature = Signature.getInstance(signatureAlgorithm);
+                signature.initSign(privateKey);
+            }
+            // После sign() экземпляр возвращается в состояние сразу после initSign
+            signature.update(signingInput);
+            byte[] signed = signature.sign();
+            signatures.offer(signature);
+            return new String(signingInput, StandardCharsets.US_ASCII) + "." + BASE64URL.encodeToString(signed);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign JWT", e);
+        }
+    }
+
+    private byte[] payload(UserSnapshot user, long issuedAt, long expiresAt) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeFieldName(ISS);
+            json.writeRawValue(issuerJson);
+            json.writeFieldName(SUB);
+            json.writeString(user.id.toString());
+            json.writeFieldName(GROUPS);
+            json.writeRawValue(groupsJson.computeIfAbsent(user.roles, JwtSigner::groupsToJson));
+            if (compact) {
+                json.writeFieldName(PROFILE_VERSION);
+                json.writeNumber(user.profileVersion);
+            } else {
+                writeOptional(json, BIRTHDATE, user.birthdate);
+                writeOptional(json, EMAIL, user.email);
+                writeOptional(json, USERNAME, user.username);
+                writeOptional(json, FIRST_NAME, user.firstName);
+                writeOptional(json, LAST_NAME, user.lastName);
+            }
+            json.writeFieldName(IAT);
+            json.writeNumber(issuedAt);
+            json.writeFieldName(EXP);
+            json.writeNumber(expiresAt);
+            // Уникальность jti не секрет, поэтому без общего SecureRandom, за который конкурируют потоки
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            json.writeFieldName(JTI);
+            json.writeString(new UUID(random.nextLong(), random.nextLong()).toString());
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeOptional(JsonGenerator json, SerializableString name, String value) throws IOException {
+        // Построитель Jwt не записывал claims со значением null
+        if (value != null) {
+            json.writeFieldName(name);
+            json.writeString(value);
+        }
+    }
+
+    private static String groupsToJson(String roles) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartArray();
+            for (String role : roles.split(",")) {
+                json.writeString(role);
+            }
+            json.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String toJson(String value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Содержимое PEM-файла в DER. Расположение — как у smallrye.jwt.sign.key.location:
+     * {@code classpath:}, {@code file:} или путь без префикса (сначала classpath, затем файловая система).
+     */
+    static byte[] readPem(String location) {
+        String pem;
+        try {
+            pem = new String(readResource(location), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + location, e);
+        }
+        String base64 = pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+
+    /**
+     * Файл по расположению в формате {@link #readPem}; через него же {@code /public-key} отдаёт ключ проверки.
+     */
+    public static byte[] readResource(String location) throws IOException {
+        if (location.startsWith("file:")) {
+            return Files.readAllBytes(Path.of(location.substring("file:".length())));
+        }
+        String name = location.startsWith("classpath:") ? location.substring("classpath:".length()) : location;
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(name)) {
+            if (in != null) {
+                return in.readAllBytes();
+            }
+        }
+        if (location.startsWith("classpath:")) {
+            throw new NoSuchFileException(name, null, "not found on classpath");
+        }
+        return Files.readAllBytes(Path.of(location));
+    }
+}
@@ -0,0 +1,78 @@
+package org.acme.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор для keyset-пагинации: позиция последней отданной строки в виде (timestamp, id)
+ * или только id. Клиент получает его в заголовке {@code X-Next-Cursor} и передаёт обратно в параметре {@code cursor}.
+ * Вид курсора проверяется при разборе: списки, упорядоченные по времени, читают его через {@link #decode},
+ * упорядоченные по id — через {@link #decodeId}, и курсор чужого вида отклоняется как повреждённый.
+ */
+public final class KeysetCursor {
+
+    public static final String HEADER = "X-Next-Cursor";
+
+    public final LocalDateTime timestamp;
+    public final long id;
+
+    private KeysetCursor(LocalDateTime timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public static KeysetCursor of(LocalDateTime timestamp, long id) {
+        return new KeysetCursor(timestamp, id);
+    }
+
+    public static KeysetCursor ofId(long id) {
+        return new KeysetCursor(null, id);
+    }
+
+    public String encode() {
+        String raw = (timestamp != null ? timestamp.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Курсор вида (timestamp, id).
+     *
+     * @throws IllegalArgumentException если курсор повреждён, сформирован не сервером или не содержит времени
+     */
+    public static KeysetCursor decode(String cursor) {
+        KeysetCursor decoded = parse(cursor);
+        if (decoded.timestamp == null) {
+            throw new IllegalArgumentException("Cursor has no timestamp");
+        }
+        return decoded;
+    }
+
+    /**
+     * Курсор вида «только id».
+     *
+     * @throws IllegalArgumentException если курсор повреждён, сформирован не сервером или содержит время
+     */
+    public static KeysetCursor decodeId(String cursor) {
+        KeysetCursor decoded = parse(cursor);
+        if (decoded.timestamp != null) {
+            throw new IllegalArgumentException("Cursor has a timestamp");
+        }
+        return decoded;
+    }
+
+    private static KeysetCursor parse(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            LocalDateTime timestamp = separator == 0 ? null : LocalDateTime.parse(raw.substring(0, separator));
+            return new KeysetCursor(timestamp, Long.parseLong(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
@@ -1,46 +1,47 @@
 package org.acme.util;
 
-import io.smallrye.jwt.build.Jwt;
-import org.acme.model.RefreshToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.acme.model.User;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
-import org.eclipse.microprofile.jwt.Claims;
+import org.acme.service.RefreshTokenStore;
+import org.acme.service.UserSnapshot;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
-
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.UUID;
+import jakarta.inject.Inject;
 
 @ApplicationScoped
 public class TokenUtils {
 
-    @ConfigProperty(name = "mp.jwt.verify.issuer")
-    String issuer;
+    static final long ACCESS_TOKEN_LIFETIME_SECONDS = 900;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    JwtSigner jwtSigner;
+
+    @Inject
+    RefreshTokenStore refreshTokenStore;
+
+    private Timer signTimer;
+
+    @PostConstruct
+    void init() {
+        signTimer = Timer.builder("chat.jwt.sign")
+                .description("Время формирования и подписи access-токена")
+                .register(registry);
+    }
 
     public String generateAccessToken(User user) {
-        return Jwt.issuer(issuer)
-                .subject(user.id.toString())
-                .groups(new HashSet<>(Arrays.asList(user.roles.split(","))))
-                .claim(Claims.birthdate.name(), user.birthdate)
-                .claim("email", user.email)
-                .claim("username", user.username)
-                .claim("firstName", user.firstName)
-                .claim("lastName", user.lastName)
-                .issuedAt(Instant.now())
-                .expiresIn(900)
-                .sign();
+        return generateAccessToken(UserSnapshot.of(user));
+    }
+
+    public String generateAccessToken(UserSnapshot user) {
+        return signTimer.record(() -> jwtSigner.sign(user, ACCESS_TOKEN_LIFETIME_SECONDS));
     }
 
     public String generateRefreshToken(User user) {
-        String refreshTokenValue = UUID.randomUUID().toString();
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.token = refreshTokenValue;
-        refreshToken.userId = user.id;
-        refreshToken.expiryDate = LocalDateTime.now().plusDays(7);
-        refreshToken.persist();
-        return refreshTokenValue;
+        return refreshTokenStore.issue(user.id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+-- Базы, созданные раньше через drop-and-create, приняты как V1 (baseline-on-migrate) и остались с content varchar(255):
+-- V1 на них не выполнялась. Расширяем до 2000, как в V1 и в сущности Message.
+-- Тип колонки, от которой зависит генерируемая searchVector (V6), менять нельзя, поэтому её индексы и саму колонку
+-- пересоздаём; на базах, где content уже varchar(2000), ничего не делается.
+do $$
+begin
+    if (select character_maximum_length from information_schema.columns
+        where table_schema = current_schema() and table_name = 'message' and column_name = 'content') < 2000 then
+        drop index if exists idx_message_sender_search;
+        drop index if exists idx_message_recipient_search;
+        alter table Message drop column searchVector;
+
+        alter table Message alter column content type varchar(2000);
+
+        alter table Message add column searchVector tsvector
+            generated always as (to_tsvector('russian', coalesce(content, ''))) stored;
+        create index idx_message_sender_search on Message using gin (sender_id, searchVector);
+        create index idx_message_recipient_search on Message using gin (recipient_id, searchVector);
+    end if;
+end $$;
@@ -0,0 +1,15 @@
+-- UserRepository.search без перебора всех совпадений: у всех usernames общее начало "@user", и запрос "user"
+-- совпадал с каждой строкой, которую затем приходилось сортировать целиком.
+
+-- Поиск по началу username, имени и фамилии: индекс в порядке ORDER BY, чтение останавливается на LIMIT.
+-- Сопоставление "C" нужно и для LIKE 'q%', и для порядка; выражения совпадают с UserRepository символ в символ.
+drop index if exists idx_app_users_username_prefix;
+create index if not exists idx_app_users_username_prefix on app_users ((lower(username)) collate "C");
+create index if not exists idx_app_users_first_name_prefix on app_users ((lower(firstName)) collate "C");
+create index if not exists idx_app_users_last_name_prefix on app_users ((lower(lastName)) collate "C");
+
+-- Остальное добирается ближайшими по триграммам (ORDER BY q <<-> doc LIMIT n): такой обход умеет только GiST.
+-- GiST обслуживает и <%, поэтому GIN-индекс из V4 больше не нужен.
+drop index if exists idx_app_users_search_trgm;
+create index if not exists idx_app_users_search_trgm on app_users
+    using gist ((lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))) gist_trgm_ops);
@@ -0,0 +1,45 @@
+-- Схема, которую раньше создавал Hibernate (database.generation=drop-and-create).
+-- Существующие базы принимаются как baseline (quarkus.flyway.baseline-on-migrate).
+
+create sequence if not exists User_SEQ start with 1 increment by 50;
+create sequence if not exists Contact_SEQ start with 1 increment by 50;
+create sequence if not exists Message_SEQ start with 1 increment by 50;
+create sequence if not exists RefreshToken_SEQ start with 1 increment by 50;
+
+create table app_users (
+    id        bigint       not null,
+    email     varchar(255),
+    password  varchar(255),
+    roles     varchar(255),
+    birthdate varchar(255),
+    username  varchar(255) unique,
+    firstName varchar(50),
+    lastName  varchar(50),
+    photoUrl  varchar(255),
+    active    boolean default true not null,
+    primary key (id)
+);
+
+create table Contact (
+    id         bigint not null,
+    owner_id   bigint references app_users,
+    contact_id bigint references app_users,
+    primary key (id)
+);
+
+create table Message (
+    id           bigint not null,
+    sender_id    bigint references app_users,
+    recipient_id bigint references app_users,
+    content      varchar(2000),
+    "timestamp"  timestamp(6),
+    primary key (id)
+);
+
+create table refresh_tokens (
+    id         bigint not null,
+    token      varchar(255),
+    userId     bigint,
+    expiryDate timestamp(6),
+    primary key (id)
+);
@@ -0,0 +1,17 @@
+-- Индексы под запросы MessageRepository, ContactRepository и RefreshToken.findByToken.
+
+-- Переписка: обе ветки OR в findPage(with=...) имеют вид sender = X AND recipient = Y.
+create index if not exists idx_message_sender_recipient_ts on Message (sender_id, recipient_id, "timestamp", id);
+-- Все сообщения участника: BitmapOr по двум индексам с сортировкой по (timestamp, id).
+create index if not exists idx_message_sender_ts on Message (sender_id, "timestamp", id);
+create index if not exists idx_message_recipient_ts on Message (recipient_id, "timestamp", id);
+
+-- Дубликаты могли появиться при гонке в POST /contacts, оставляем самую раннюю запись.
+delete from Contact a using Contact b
+where a.owner_id = b.owner_id and a.contact_id = b.contact_id and a.id > b.id;
+alter table Contact add constraint uk_contact_owner_contact unique (owner_id, contact_id);
+
+create unique index if not exists uk_refresh_tokens_token on refresh_tokens (token);
+create index if not exists idx_refresh_tokens_user on refresh_tokens (userId);
+
+create index if not exists idx_app_users_email on app_users (email);
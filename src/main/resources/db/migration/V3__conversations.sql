@@ -0,0 +1,34 @@
+-- Диалоги с последним сообщением и счётчиками непрочитанного (см. ConversationRepository.recordMessage).
+
+create sequence if not exists Conversation_SEQ start with 1 increment by 50;
+
+create table conversations (
+    id                 bigint  not null,
+    userA_id           bigint  not null references app_users,
+    userB_id           bigint  not null references app_users,
+    lastMessageId      bigint,
+    lastSenderId       bigint,
+    lastMessagePreview varchar(100),
+    lastMessageAt      timestamp(6),
+    unreadA            integer default 0 not null,
+    unreadB            integer default 0 not null,
+    primary key (id),
+    constraint uk_conversations_pair unique (userA_id, userB_id)
+);
+
+-- Список чатов: диалоги пользователя по убыванию последней активности
+create index idx_conversations_a_activity on conversations (userA_id, lastMessageAt desc, id desc);
+create index idx_conversations_b_activity on conversations (userB_id, lastMessageAt desc, id desc);
+
+-- Заполняем по уже существующей переписке; непрочитанное раньше не отслеживалось
+insert into conversations (id, userA_id, userB_id, lastMessageId, lastSenderId, lastMessagePreview, lastMessageAt, unreadA, unreadB)
+select nextval('Conversation_SEQ'), user_a, user_b, id, sender_id, left(content, 100), "timestamp", 0, 0
+from (
+    select distinct on (least(sender_id, recipient_id), greatest(sender_id, recipient_id))
+           least(sender_id, recipient_id) as user_a,
+           greatest(sender_id, recipient_id) as user_b,
+           id, sender_id, content, "timestamp"
+    from Message
+    where sender_id is not null and recipient_id is not null
+    order by least(sender_id, recipient_id), greatest(sender_id, recipient_id), "timestamp" desc, id desc
+) last_messages;
@@ -0,0 +1,11 @@
+-- Индексы под UserRepository.search (GET /users/search).
+-- pg_trgm — доверенное расширение (PostgreSQL 13+), владелец базы может создать его сам.
+create extension if not exists pg_trgm;
+
+-- Подстрока и нечёткое совпадение (LIKE '%q%', q <% doc) по username, имени и фамилии сразу.
+-- Выражение должно совпадать с UserRepository.SEARCH_DOCUMENT символ в символ, иначе индекс не используется.
+create index if not exists idx_app_users_search_trgm on app_users
+    using gin ((lower(coalesce(username, '') || ' ' || coalesce(firstName, '') || ' ' || coalesce(lastName, ''))) gin_trgm_ops);
+
+-- Короткие запросы (1-2 символа) ищут только по началу username: триграммам не хватает длины.
+create index if not exists idx_app_users_username_prefix on app_users (lower(username) text_pattern_ops);
@@ -0,0 +1,5 @@
+-- Идемпотентная отправка: необязательный id сообщения, сгенерированный клиентом (см. MessageRepository.create).
+-- Повтор с тем же (отправитель, clientMessageId) возвращает уже сохранённое сообщение; NULL не участвует в уникальности.
+
+alter table Message add column clientMessageId varchar(64);
+create unique index if not exists uk_message_sender_client_id on Message (sender_id, clientMessageId);
@@ -0,0 +1,14 @@
+-- Полнотекстовый поиск по сообщениям (MessageRepository.search, GET /messages/search).
+-- btree_gin — доверенное расширение (PostgreSQL 13+), владелец базы может создать его сам.
+create extension if not exists btree_gin;
+
+-- Поисковый вектор считает сама база при вставке и изменении content; приложение колонку не пишет и не читает.
+-- Конфигурация 'russian' стеммит кириллицу по-русски, а латиницу по-английски.
+-- На большой таблице добавление stored-колонки переписывает её под эксклюзивной блокировкой: выполняйте в окно обслуживания.
+alter table Message add column searchVector tsvector
+    generated always as (to_tsvector('russian', coalesce(content, ''))) stored;
+
+-- Поиск всегда ограничен сообщениями пользователя: составной GIN находит пересечение «участник + слова»
+-- внутри индекса, без чтения всех совпадений по слову у всех пользователей. Отправитель и получатель — BitmapOr.
+create index if not exists idx_message_sender_search on Message using gin (sender_id, searchVector);
+create index if not exists idx_message_recipient_search on Message using gin (recipient_id, searchVector);
@@ -0,0 +1,10 @@
+-- Refresh-токены хранятся только в виде SHA-256 (RefreshTokenStore.hash): утечка таблицы не даёт действующих токенов.
+-- sha256() встроена в PostgreSQL 11+.
+
+alter table refresh_tokens add column tokenHash varchar(64);
+update refresh_tokens set tokenHash = encode(sha256(convert_to(token, 'UTF8')), 'hex');
+alter table refresh_tokens alter column tokenHash set not null;
+create unique index if not exists uk_refresh_tokens_token_hash on refresh_tokens (tokenHash);
+
+-- Вместе с колонкой удаляется и uk_refresh_tokens_token
+alter table refresh_tokens drop column token;
@@ -0,0 +1,10 @@
+-- Очистка истёкших refresh-токенов (RefreshTokenPurger) и ограничение числа токенов на пользователя.
+-- Таблица не секционируется по expiryDate: уникальный индекс по tokenHash в секционированной таблице
+-- должен включать ключ секционирования, а поиск по хешу пришлось бы вести во всех секциях.
+
+-- Пачки очистки: самые старые истёкшие строки без полного просмотра таблицы.
+create index if not exists idx_refresh_tokens_expiry on refresh_tokens (expiryDate);
+
+-- Токены пользователя от новых к старым; заменяет индекс только по userId.
+create index if not exists idx_refresh_tokens_user_expiry on refresh_tokens (userId, expiryDate);
+drop index if exists idx_refresh_tokens_user;
@@ -0,0 +1,3 @@
+-- Версия профиля для компактных access-токенов (chat.jwt.compact): токен несёт только её,
+-- а клиент перечитывает профиль, когда версия в новом токене отличается от известной.
+alter table app_users add column if not exists profileVersion integer not null default 0;
@@ -1,24 +1,44 @@
 package org.acme;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
+import io.smallrye.jwt.auth.principal.JWTParser;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import org.acme.dto.AuthDTO;
 import org.acme.model.Contact;
 import org.acme.model.Message;
 import org.acme.model.RefreshToken;
+import org.acme.model.User;
+import org.acme.service.RefreshTokenPurger;
+import org.acme.service.RefreshTokenStore;
+import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 public class AuthResourceTest {
 
+    @Inject
+    JWTParser jwtParser;
+
+    @Inject
+    RefreshTokenStore refreshTokenStore;
+
+    @Inject
+    RefreshTokenPurger refreshTokenPurger;
+
     @BeforeEach
     @Transactional
     public void setup() {
@@ -168,6 +188,37 @@ public class AuthResourceTest {
                 .body("refreshToken", notNullValue());
     }
 
+    @Test
+    public void testAccessTokenClaims() throws Exception {
+        String email = "claims-" + UUID.randomUUID() + "@quarkus.io";
+
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = "John";
+        registration.lastName = "Doe";
+
+        String accessToken = given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .then()
+                .statusCode(201)
+                .extract().path("accessToken");
+
+        // parse проверяет подпись и издателя по mp.jwt.verify.*
+        JsonWebToken jwt = jwtParser.parse(accessToken);
+        Long userId = QuarkusTransaction.requiringNew().call(() -> User.findByEmail(email).id);
+        assertEquals(userId.toString(), jwt.getSubject());
+        assertTrue(jwt.getGroups().contains("User"));
+        assertEquals(email, jwt.getClaim("email"));
+        assertEquals("John", jwt.getClaim("firstName"));
+        assertEquals(900L, jwt.getExpirationTime() - jwt.getIssuedAtTime());
+        assertTrue(jwt.getTokenID() != null && !jwt.getTokenID().isEmpty());
+    }
+
     @Test
     public void testLoginInvalidCredentials() {
         AuthDTO.Login login = new AuthDTO.Login();
@@ -200,6 +251,35 @@ public class AuthResourceTest {
                 .body("error", is("Email и пароль обязательны"));
     }
 
+    @Test
+    public void testLoginThrottledPerEmail() {
+        AuthDTO.Login login = new AuthDTO.Login();
+        login.email = "bruteforce-" + UUID.randomUUID() + "@quarkus.io";
+        login.password = "wrongpassword";
+
+        for (int i = 0; i < 10; i++) {
+            given()
+                    .contentType(ContentType.JSON)
+                    .body(login)
+                    .when()
+                    .post("/auth/login")
+                    .then()
+                    .statusCode(401);
+        }
+
+        // Регистр email не должен помогать обойти лимит
+        login.email = login.email.toUpperCase();
+        given()
+                .contentType(ContentType.JSON)
+                .body(login)
+                .when()
+                .post("/auth/login")
+                .then()
+                .statusCode(429)
+                .header("Retry-After", notNullValue())
+                .body("error", is("Слишком много попыток входа, повторите попытку позже"));
+    }
+
     // --- Refresh Token Tests ---
     @Test
     public void testRefreshTokenSuccess() {
@@ -236,6 +316,59 @@ public class AuthResourceTest {
                 .body("refreshToken", notNullValue());
     }
 
+    @Test
+    public void testRefreshTokenCanBeUsedOnce() {
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = "rotateuser-" + UUID.randomUUID() + "@quarkus.io";
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = "John";
+        registration.lastName = "Doe";
+
+        AuthDTO.Refresh refresh = new AuthDTO.Refresh();
+        refresh.refreshToken = given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .jsonPath().getString("refreshToken");
+
+        AuthDTO.Refresh rotated = new AuthDTO.Refresh();
+        rotated.refreshToken = given()
+                .contentType(ContentType.JSON)
+                .body(refresh)
+                .when()
+                .post("/auth/refresh")
+                .then()
+                .statusCode(200)
+                .extract()
+                .path("refreshToken");
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(refresh)
+                .when()
+                .post("/auth/refresh")
+                .then()
+                .statusCode(401);
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(rotated)
+                .when()
+                .post("/auth/logout")
+                .then()
+                .statusCode(200);
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(rotated)
+                .when()
+                .post("/auth/refresh")
+                .then()
+                .statusCode(401);
+    }
+
     @Test
     public void testRefreshTokenInvalid() {
         AuthDTO.Refresh refresh = new AuthDTO.Refresh();
@@ -330,4 +463,66 @@ public class AuthResourceTest {
                 .statusCode(400)
                 .body("error", is("Refresh token обязателен для выхода"));
     }
-}
\ No newline at end of file
+
+    // --- Refresh token housekeeping ---
+    @Test
+    public void testRefreshTokensPerUserAreCapped() {
+        String email = "capuser-" + UUID.randomUUID() + "@quarkus.io";
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = "John";
+        registration.lastName = "Doe";
+
+        // Токен регистрации — самый старый
+        String oldest = given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .then()
+                .statusCode(201)
+                .extract().path("refreshToken");
+        Long userId = QuarkusTransaction.requiringNew().call(() -> User.findByEmail(email).id);
+
+        // Ещё 10 токенов при пределе по умолчанию (10) вытесняют ровно один — самый старый
+        String secondOldest = refreshTokenStore.issue(userId);
+        String newest = null;
+        for (int i = 0; i < 9; i++) {
+            newest = refreshTokenStore.issue(userId);
+        }
+
+        assertNull(refreshTokenStore.consume(oldest));
+        assertEquals(userId, refreshTokenStore.consume(secondOldest));
+        assertEquals(userId, refreshTokenStore.consume(newest));
+    }
+
+    @Test
+    public void testExpiredRefreshTokensArePurged() {
+        String validHash = RefreshTokenStore.hash(UUID.randomUUID().toString());
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int i = 0; i < 3; i++) {
+                persistToken(RefreshTokenStore.hash(UUID.randomUUID().toString()), LocalDateTime.now().minusDays(1));
+            }
+            persistToken(validHash, LocalDateTime.now().plusDays(1));
+        });
+
+        refreshTokenPurger.purge();
+
+        assertEquals(0L, countTokens("expiryDate < ?1", LocalDateTime.now()));
+        assertEquals(1L, countTokens("tokenHash", validHash));
+    }
+
+    private static void persistToken(String tokenHash, LocalDateTime expiryDate) {
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.tokenHash = tokenHash;
+        refreshToken.userId = 1L;
+        refreshToken.expiryDate = expiryDate;
+        refreshToken.persist();
+    }
+
+    static long countTokens(String query, Object... params) {
+        return QuarkusTransaction.requiringNew().call(() -> RefreshToken.count(query, params));
+    }
+}
@@ -0,0 +1,159 @@
+package org.acme;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.websockets.next.BasicWebSocketConnector;
+import io.quarkus.websockets.next.WebSocketClientConnection;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.acme.dto.AuthDTO;
+import org.acme.dto.MessageDTO;
+import org.acme.model.User;
+import org.acme.service.ClusterMessageBus;
+import org.acme.service.MessageSessionRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Рассылка между узлами через LISTEN/NOTIFY. Второй узел изображает уведомление, отправленное в канал вручную.
+ */
+@QuarkusTest
+@TestProfile(ClusterMessageBusTest.ClusterProfile.class)
+public class ClusterMessageBusTest {
+
+    public static class ClusterProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // Наблюдатели StartupEvent в тестах отключены (application.properties), а подписчик LISTEN запускается в нём
+            return Map.of("chat.cluster.notify.enabled", "true",
+                    "quarkus.arc.test.disable-application-lifecycle-observers", "false");
+        }
+    }
+
+    @TestHTTPResource("/")
+    URI baseUri;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    ClusterMessageBus clusterMessageBus;
+
+    @Inject
+    MessageSessionRegistry sessionRegistry;
+
+    @Test
+    public void testNotificationFromOtherNodePushesToLocalSocket() throws InterruptedException {
+        String senderEmail = register();
+        String recipientEmail = register();
+        String senderToken = login(senderEmail);
+        String recipientToken = login(recipientEmail);
+        Long recipientId = QuarkusTransaction.requiringNew().call(() -> User.findByEmail(recipientEmail).id);
+
+        // Сообщение уже в базе, но подключение появилось после его отправки и локальной доставки не видело
+        int messageId = sendMessage(senderToken, recipientId, "С другого узла");
+
+        LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+        WebSocketClientConnection connection = BasicWebSocketConnector.create()
+                .baseUri(baseUri)
+                .path("/messages/stream")
+                .addHeader("Authorization", "Bearer " + recipientToken)
+                .onTextMessage((c, message) -> received.add(message))
+                .connectAndAwait();
+        try {
+            // Уведомление, отправленное до LISTEN или до регистрации подключения в @OnOpen, никому не доставляется
+            awaitTrue(clusterMessageBus::isListening, "LISTEN subscriber is not connected");
+            awaitTrue(() -> sessionRegistry.isConnected(recipientId), "WebSocket connection is not registered");
+
+            String payload = "othernode|" + System.currentTimeMillis() + "|" + recipientId + ":" + messageId;
+            QuarkusTransaction.requiringNew().run(() -> entityManager
+                    .createNativeQuery("SELECT pg_notify('chat_messages', :payload)")
+                    .setParameter("payload", payload)
+                    .getSingleResult());
+
+            String pushed = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(pushed);
+            assertTrue(pushed.contains("С другого узла"));
+        } finally {
+            connection.closeAndAwait();
+        }
+
+        given()
+                .when()
+                .get("/q/metrics")
+                .then()
+                .statusCode(200)
+                .body(containsString("chat_cluster_notify_published_total"))
+                .body(containsString("chat_cluster_notify_latency_seconds_count"));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            Thread.sleep(50);
+        }
+    }
+
+    private String register() {
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = "cluster-" + UUID.randomUUID() + "@quarkus.io";
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = "John";
+        registration.lastName = "Doe";
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .then()
+                .statusCode(201);
+        return registration.email;
+    }
+
+    private String login(String email) {
+        AuthDTO.Login login = new AuthDTO.Login();
+        login.email = email;
+        login.password = "password123";
+        return given()
+                .contentType(ContentType.JSON)
+                .body(login)
+                .when()
+                .post("/auth/login")
+                .jsonPath().getString("accessToken");
+    }
+
+    private int sendMessage(String accessToken, Long recipientId, String content) {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = recipientId;
+        message.content = content;
+
+        return given()
+                .auth().oauth2(accessToken)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(201)
+                .extract()
+                .path("id");
+    }
+}
@@ -0,0 +1,89 @@
+package org.acme;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import io.smallrye.jwt.auth.principal.JWTParser;
+import jakarta.inject.Inject;
+import org.acme.controller.UserProfileResource;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Те же сценарии профиля с компактными токенами, подписанными ES256.
+ */
+@QuarkusTest
+@TestProfile(CompactEs256TokenTest.CompactEs256Profile.class)
+public class CompactEs256TokenTest extends UserProfileResourceTest {
+
+    public static class CompactEs256Profile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("chat.jwt.compact", "true",
+                    "smallrye.jwt.sign.key.location", "classpath:es256/privateKey.pem",
+                    "mp.jwt.verify.publickey.location", "classpath:es256/publicKey.pem",
+                    "mp.jwt.verify.publickey.algorithm", "ES256");
+        }
+    }
+
+    @Inject
+    JWTParser jwtParser;
+
+    @Test
+    public void testCompactTokenClaims() throws Exception {
+        String header = new String(Base64.getUrlDecoder().decode(accessToken.split("\\.")[0]), StandardCharsets.UTF_8);
+        assertEquals("{\"alg\":\"ES256\",\"typ\":\"JWT\"}", header);
+
+        JsonWebToken jwt = jwtParser.parse(accessToken);
+        assertEquals(userId.toString(), jwt.getSubject());
+        assertTrue(jwt.getGroups().contains("User"));
+        assertEquals("0", String.valueOf(jwt.<Object>getClaim("pv")));
+        assertNull(jwt.getClaim("email"));
+        assertNull(jwt.getClaim("firstName"));
+    }
+
+    @Test
+    public void testCompactTokenSize() {
+        // Полный RS256-токен длиннее одной только своей подписи (342 символа)
+        assertTrue(accessToken.length() < 400, "compact ES256 token: " + accessToken.length() + " bytes");
+    }
+
+    @Test
+    public void testProfileVersionGrowsOnPatch() throws Exception {
+        UserProfileResource.PatchProfileDTO patch = new UserProfileResource.PatchProfileDTO();
+        patch.lastName = "Smith";
+        String newAccessToken = given()
+                .auth().oauth2(accessToken)
+                .contentType(ContentType.JSON)
+                .body(patch)
+                .when()
+                .patch("/profile")
+                .then()
+                .statusCode(200)
+                .extract().path("accessToken");
+
+        assertEquals("1", String.valueOf(jwtParser.parse(newAccessToken).<Object>getClaim("pv")));
+    }
+
+    @Test
+    public void testPublicKeyIsConfiguredEcKey() {
+        String expected = "-----BEGIN PUBLIC KEY-----\nMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE";
+        given()
+                .when()
+                .get("/public-key")
+                .then()
+                .statusCode(200)
+                .body(startsWith(expected));
+    }
+}
@@ -1,8 +1,10 @@
 package org.acme;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import org.acme.dto.AddContactDTO;
 import org.acme.dto.AuthDTO;
@@ -10,6 +12,8 @@ import org.acme.model.Contact;
 import org.acme.model.Message;
 import org.acme.model.RefreshToken;
 import org.acme.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -17,6 +21,8 @@ import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 public class ContactListResourceTest {
@@ -24,6 +30,9 @@ public class ContactListResourceTest {
     private String accessToken1;
     private Long userId2;
 
+    @Inject
+    SessionFactory sessionFactory;
+
     @BeforeEach
     @Transactional
     public void setup() {
@@ -144,4 +153,94 @@ public class ContactListResourceTest {
                 .body("[0].id", is(userId2.intValue()))
                 .body("[0].firstName", is("Jane"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetContactsUsesConstantNumberOfQueries() {
+        for (int i = 0; i < 5; i++) {
+            AddContactDTO contactDTO = new AddContactDTO();
+            contactDTO.id = registerUser("Contact" + i);
+            given()
+                    .auth().oauth2(accessToken1)
+                    .contentType(ContentType.JSON)
+                    .body(contactDTO)
+                    .when()
+                    .post("/contacts")
+                    .then()
+                    .statusCode(201);
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        given()
+                .auth().oauth2(accessToken1)
+                .when()
+                .get("/contacts")
+                .then()
+                .statusCode(200)
+                .body("size()", is(5));
+
+        // Текущий пользователь + одна проекция контактов, независимо от их числа; N+1 дал бы не меньше 6.
+        // Статистика общая для SessionFactory, поэтому проверяется верхняя граница с запасом на фоновые задачи
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements < 6, "Expected a constant number of statements, got " + statements);
+    }
+
+    @Test
+    public void testGetContactsPaged() {
+        for (int i = 0; i < 3; i++) {
+            AddContactDTO contactDTO = new AddContactDTO();
+            contactDTO.id = registerUser("Paged" + i);
+            given()
+                    .auth().oauth2(accessToken1)
+                    .contentType(ContentType.JSON)
+                    .body(contactDTO)
+                    .when()
+                    .post("/contacts")
+                    .then()
+                    .statusCode(201);
+        }
+
+        Response firstPage = given()
+                .auth().oauth2(accessToken1)
+                .when()
+                .get("/contacts?limit=2")
+                .andReturn();
+        firstPage.then()
+                .statusCode(200)
+                .body("size()", is(2));
+        String cursor = firstPage.getHeader("X-Next-Cursor");
+        assertNotNull(cursor);
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("limit", 2)
+                .queryParam("cursor", cursor)
+                .when()
+                .get("/contacts")
+                .then()
+                .statusCode(200)
+                .header("X-Next-Cursor", nullValue())
+                .body("size()", is(1))
+                .body("[0].id", not(anyOf(is(firstPage.jsonPath().getInt("[0].id")), is(firstPage.jsonPath().getInt("[1].id")))));
+    }
+
+    private Long registerUser(String firstName) {
+        String email = "contact-" + UUID.randomUUID() + "@quarkus.io";
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = firstName;
+        registration.lastName = "Contact";
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .then()
+                .statusCode(201);
+        return QuarkusTransaction.requiringNew().call(() -> User.findByEmail(email).id);
+    }
+}
@@ -0,0 +1,182 @@
+package org.acme;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import jakarta.transaction.Transactional;
+import org.acme.dto.AuthDTO;
+import org.acme.dto.MessageDTO;
+import org.acme.model.Contact;
+import org.acme.model.Conversation;
+import org.acme.model.Message;
+import org.acme.model.RefreshToken;
+import org.acme.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+
+@QuarkusTest
+public class ConversationResourceTest {
+
+    private String accessToken1;
+    private String accessToken2;
+    private Long userId1;
+    private Long userId2;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        // Очищаем только связанные таблицы
+        Conversation.deleteAll();
+        Contact.deleteAll();
+        Message.deleteAll();
+        RefreshToken.deleteAll();
+
+        String email1 = "user1-" + UUID.randomUUID() + "@quarkus.io";
+        accessToken1 = register(email1, "John", "Doe");
+        userId1 = User.findByEmail(email1).id;
+
+        String email2 = "user2-" + UUID.randomUUID() + "@quarkus.io";
+        accessToken2 = register(email2, "Jane", "Smith");
+        userId2 = User.findByEmail(email2).id;
+    }
+
+    @Test
+    public void testConversationTracksLastMessageAndUnread() {
+        sendMessage(accessToken1, userId2, "Привет!");
+        sendMessage(accessToken1, userId2, "Как дела?");
+
+        given()
+                .auth().oauth2(accessToken2)
+                .when()
+                .get("/conversations")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].userId", is(userId1.intValue()))
+                .body("[0].firstName", is("John"))
+                .body("[0].lastMessagePreview", is("Как дела?"))
+                .body("[0].lastMessageSenderId", is(userId1.intValue()))
+                .body("[0].unreadCount", is(2));
+
+        given()
+                .auth().oauth2(accessToken1)
+                .when()
+                .get("/conversations")
+                .then()
+                .statusCode(200)
+                .body("[0].userId", is(userId2.intValue()))
+                .body("[0].unreadCount", is(0));
+    }
+
+    @Test
+    public void testMarkRead() {
+        sendMessage(accessToken1, userId2, "Привет!");
+
+        given()
+                .auth().oauth2(accessToken2)
+                .when()
+                .post("/conversations/" + userId1 + "/read")
+                .then()
+                .statusCode(204);
+
+        given()
+                .auth().oauth2(accessToken2)
+                .when()
+                .get("/conversations")
+                .then()
+                .statusCode(200)
+                .body("[0].unreadCount", is(0));
+    }
+
+    @Test
+    public void testMarkReadUnknownConversation() {
+        given()
+                .auth().oauth2(accessToken2)
+                .when()
+                .post("/conversations/999999/read")
+                .then()
+                .statusCode(404)
+                .body("error", is("Диалог не найден"));
+    }
+
+    @Test
+    public void testConversationsPagedByLastActivity() {
+        String email3 = "user3-" + UUID.randomUUID() + "@quarkus.io";
+        register(email3, "Ivan", "Petrov");
+        Long userId3 = QuarkusTransaction.requiringNew().call(() -> User.findByEmail(email3).id);
+
+        sendMessage(accessToken1, userId2, "Старый диалог");
+        sendMessage(accessToken1, userId3, "Новый диалог");
+
+        Response firstPage = given()
+                .auth().oauth2(accessToken1)
+                .queryParam("limit", 1)
+                .when()
+                .get("/conversations")
+                .andReturn();
+
+        firstPage.then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].lastMessagePreview", is("Новый диалог"));
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("limit", 1)
+                .queryParam("cursor", firstPage.getHeader("X-Next-Cursor"))
+                .when()
+                .get("/conversations")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].lastMessagePreview", is("Старый диалог"));
+    }
+
+    @Test
+    public void testGetConversationsUnauthorized() {
+        given()
+                .when()
+                .get("/conversations")
+                .then()
+                .statusCode(401);
+    }
+
+    private String register(String email, String firstName, String lastName) {
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = firstName;
+        registration.lastName = lastName;
+
+        return given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .andReturn()
+                .jsonPath()
+                .getString("accessToken");
+    }
+
+    private void sendMessage(String accessToken, Long recipientId, String content) {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = recipientId;
+        message.content = content;
+
+        given()
+                .auth().oauth2(accessToken)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(201);
+    }
+}
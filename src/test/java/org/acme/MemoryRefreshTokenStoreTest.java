@@ -0,0 +1,117 @@
+package org.acme;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.acme.dto.AuthDTO;
+import org.acme.model.RefreshToken;
+import org.acme.model.User;
+import org.acme.service.MemoryRefreshTokenStore;
+import org.acme.service.RefreshTokenStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Те же сценарии аутентификации на хранилище refresh-токенов в памяти, плюс запись в базу и загрузка при старте.
+ */
+@QuarkusTest
+@TestProfile(MemoryRefreshTokenStoreTest.MemoryStoreProfile.class)
+public class MemoryRefreshTokenStoreTest extends AuthResourceTest {
+
+    public static class MemoryStoreProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("chat.refresh-tokens.store", "memory",
+                    // Плановая запись не должна мешать проверкам ниже
+                    "chat.refresh-tokens.flush-interval", "1h",
+                    "quarkus.arc.test.disable-application-lifecycle-observers", "false");
+        }
+    }
+
+    @Inject
+    MemoryRefreshTokenStore memoryStore;
+
+    @Test
+    public void testTokensAreWrittenBehindAsHashes() {
+        String email = "writebehind-" + UUID.randomUUID() + "@quarkus.io";
+        String refreshToken = register(email);
+        String tokenHash = RefreshTokenStore.hash(refreshToken);
+
+        assertEquals(0L, countTokens("tokenHash", tokenHash));
+        memoryStore.flush();
+        assertEquals(1L, countTokens("tokenHash", tokenHash));
+
+        AuthDTO.Refresh refresh = new AuthDTO.Refresh();
+        refresh.refreshToken = refreshToken;
+        given()
+                .contentType(ContentType.JSON)
+                .body(refresh)
+                .when()
+                .post("/auth/logout")
+                .then()
+                .statusCode(200);
+        memoryStore.flush();
+        assertEquals(0L, countTokens("tokenHash", tokenHash));
+    }
+
+    @Test
+    public void testReloadPicksUpTokensFromDatabase() {
+        String email = "reload-" + UUID.randomUUID() + "@quarkus.io";
+        register(email);
+
+        // Токен, записанный прошлым запуском приложения
+        String previousRunToken = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew().run(() -> {
+            RefreshToken refreshToken = new RefreshToken();
+            refreshToken.tokenHash = RefreshTokenStore.hash(previousRunToken);
+            refreshToken.userId = User.findByEmail(email).id;
+            refreshToken.expiryDate = LocalDateTime.now().plusDays(1);
+            refreshToken.persist();
+        });
+
+        AuthDTO.Refresh refresh = new AuthDTO.Refresh();
+        refresh.refreshToken = previousRunToken;
+        given()
+                .contentType(ContentType.JSON)
+                .body(refresh)
+                .when()
+                .post("/auth/refresh")
+                .then()
+                .statusCode(401);
+
+        memoryStore.reload();
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(refresh)
+                .when()
+                .post("/auth/refresh")
+                .then()
+                .statusCode(200);
+    }
+
+    private String register(String email) {
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = "John";
+        registration.lastName = "Doe";
+
+        return given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .jsonPath().getString("refreshToken");
+    }
+}
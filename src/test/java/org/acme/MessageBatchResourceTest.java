@@ -0,0 +1,228 @@
+package org.acme;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.acme.dto.AuthDTO;
+import org.acme.dto.MessageDTO;
+import org.acme.model.Contact;
+import org.acme.model.Message;
+import org.acme.model.RefreshToken;
+import org.acme.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class MessageBatchResourceTest {
+
+    private String accessToken1;
+    private Long userId2;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        // Очищаем только связанные таблицы
+        Contact.deleteAll();
+        Message.deleteAll();
+        RefreshToken.deleteAll();
+
+        accessToken1 = register("John", "Doe").jsonPath().getString("accessToken");
+        String email2 = "user2-" + UUID.randomUUID() + "@quarkus.io";
+        register(email2, "Jane", "Smith");
+        userId2 = User.findByEmail(email2).id;
+    }
+
+    @Test
+    public void testBatchReturnsResultPerItem() {
+        MessageDTO.BatchRequest batch = new MessageDTO.BatchRequest();
+        batch.messages = List.of(
+                message(userId2, "Первое"),
+                message(userId2, " "),
+                message(Long.MAX_VALUE, "Никому"),
+                message(userId2, "Второе"));
+
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(batch)
+                .when()
+                .post("/messages/batch")
+                .then()
+                .statusCode(200)
+                .body("size()", is(4))
+                .body("[0].status", is(201))
+                .body("[0].message.content", is("Первое"))
+                .body("[1].status", is(400))
+                .body("[1].error", is("Не указан ID получателя или текст сообщения"))
+                .body("[2].status", is(404))
+                .body("[2].error", is("Получатель не найден"))
+                .body("[3].status", is(201))
+                .body("[3].index", is(3));
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("with", userId2)
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .body("[0].content", is("Первое"))
+                .body("[1].content", is("Второе"));
+    }
+
+    @Test
+    public void testBatchUsesConstantNumberOfStatements() {
+        MessageDTO.BatchRequest batch = new MessageDTO.BatchRequest();
+        batch.messages = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.messages.add(message(userId2, "Рассылка " + i));
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(batch)
+                .when()
+                .post("/messages/batch")
+                .then()
+                .statusCode(200)
+                .body("findAll { it.status == 201 }.size()", is(200));
+
+        // Отправитель, получатели одним IN, несколько вызовов последовательности и по оператору на JDBC-батч вставок
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= 15, "Expected batched inserts, got " + statements + " statements");
+    }
+
+    @Test
+    public void testBatchReplaysClientMessageIds() {
+        String clientMessageId = UUID.randomUUID().toString();
+        MessageDTO.CreateMessage first = message(userId2, "Один раз");
+        first.clientMessageId = clientMessageId;
+        MessageDTO.CreateMessage sameInBatch = message(userId2, "Один раз");
+        sameInBatch.clientMessageId = clientMessageId;
+        MessageDTO.BatchRequest batch = new MessageDTO.BatchRequest();
+        batch.messages = List.of(first, sameInBatch);
+
+        int id = given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(batch)
+                .when()
+                .post("/messages/batch")
+                .then()
+                .statusCode(200)
+                .body("[0].replayed", is(false))
+                .body("[1].status", is(201))
+                .body("[1].replayed", is(true))
+                .extract()
+                .path("[0].message.id");
+
+        // Повтор всей пачки ничего не создаёт
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(batch)
+                .when()
+                .post("/messages/batch")
+                .then()
+                .statusCode(200)
+                .body("[0].replayed", is(true))
+                .body("[0].message.id", is(id))
+                .body("[1].message.id", is(id));
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("with", userId2)
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1));
+    }
+
+    @Test
+    public void testBatchSizeLimits() {
+        MessageDTO.BatchRequest empty = new MessageDTO.BatchRequest();
+        empty.messages = List.of();
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(empty)
+                .when()
+                .post("/messages/batch")
+                .then()
+                .statusCode(400);
+
+        MessageDTO.BatchRequest tooLarge = new MessageDTO.BatchRequest();
+        tooLarge.messages = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            tooLarge.messages.add(message(userId2, "Слишком много"));
+        }
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(tooLarge)
+                .when()
+                .post("/messages/batch")
+                .then()
+                .statusCode(400)
+                .body("error", is("Передайте от 1 до 500 сообщений"));
+    }
+
+    @Test
+    public void testBatchUnauthorized() {
+        given()
+                .contentType(ContentType.JSON)
+                .body(new MessageDTO.BatchRequest())
+                .when()
+                .post("/messages/batch")
+                .then()
+                .statusCode(401);
+    }
+
+    private static MessageDTO.CreateMessage message(Long recipientId, String content) {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = recipientId;
+        message.content = content;
+        return message;
+    }
+
+    private Response register(String firstName, String lastName) {
+        return register("user1-" + UUID.randomUUID() + "@quarkus.io", firstName, lastName);
+    }
+
+    private Response register(String email, String firstName, String lastName) {
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = firstName;
+        registration.lastName = lastName;
+
+        return given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .andReturn();
+    }
+}
@@ -1,6 +1,10 @@
 package org.acme;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.http.TestHTTPResource;
 import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.websockets.next.BasicWebSocketConnector;
+import io.quarkus.websockets.next.WebSocketClientConnection;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
 import jakarta.transaction.Transactional;
@@ -10,17 +14,38 @@ import org.acme.model.Contact;
 import org.acme.model.Message;
 import org.acme.model.RefreshToken;
 import org.acme.model.User;
+import org.acme.util.KeysetCursor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 public class MessageResourceTest {
 
+    @TestHTTPResource("/")
+    URI baseUri;
+
+    @ConfigProperty(name = "chat.websocket.send-queue-size")
+    int sendQueueSize;
+
     private String accessToken1;
     private String accessToken2;
     private Long userId1;
@@ -73,5 +98,380 @@ public class MessageResourceTest {
         userId2 = User.findByEmail(email2).id;
     }
 
+    @Test
+    public void testGetMessagesForwardPages() {
+        sendMessage(accessToken1, userId2, "Первое");
+        sendMessage(accessToken2, userId1, "Второе");
+        sendMessage(accessToken1, userId2, "Третье");
+
+        Response firstPage = given()
+                .auth().oauth2(accessToken1)
+                .queryParam("with", userId2)
+                .queryParam("limit", 2)
+                .when()
+                .get("/messages")
+                .andReturn();
+
+        firstPage.then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .body("[0].content", is("Первое"))
+                .body("[1].content", is("Второе"));
+        String nextCursor = firstPage.getHeader("X-Next-Cursor");
+        assertNotNull(nextCursor);
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("with", userId2)
+                .queryParam("limit", 2)
+                .queryParam("cursor", nextCursor)
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(200)
+                .header("X-Next-Cursor", nullValue())
+                .body("size()", is(1))
+                .body("[0].content", is("Третье"));
+    }
+
+    @Test
+    public void testGetMessagesBackwardStartsFromNewest() {
+        sendMessage(accessToken1, userId2, "Первое");
+        sendMessage(accessToken2, userId1, "Второе");
+        sendMessage(accessToken1, userId2, "Третье");
+
+        Response newestPage = given()
+                .auth().oauth2(accessToken2)
+                .queryParam("limit", 2)
+                .queryParam("direction", "backward")
+                .when()
+                .get("/messages")
+                .andReturn();
+
+        newestPage.then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .body("[0].content", is("Второе"))
+                .body("[1].content", is("Третье"));
+
+        given()
+                .auth().oauth2(accessToken2)
+                .queryParam("limit", 2)
+                .queryParam("direction", "backward")
+                .queryParam("cursor", newestPage.getHeader("X-Next-Cursor"))
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].content", is("Первое"));
+    }
+
+    @Test
+    public void testGetMessagesRejectsIdOnlyCursor() {
+        // Такой курсор отдают /users и /contacts; без времени условие по timestamp вернуло бы пустую страницу
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("cursor", KeysetCursor.ofId(userId2).encode())
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(400)
+                .body("error", is("Неверный курсор"));
+    }
+
+    @Test
+    public void testSendMessageTooLong() {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = userId2;
+        message.content = "a".repeat(2001);
+
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(400);
+
+        // Ровно 2000 символов помещаются в колонку
+        message.content = "a".repeat(2000);
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(201);
+    }
+
+    @Test
+    public void testGetMessagesInvalidCursor() {
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("cursor", "not-a-cursor")
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(400)
+                .body("error", is("Неверный курсор"));
+    }
+
+    @Test
+    public void testSendWithClientMessageIdIsIdempotent() {
+        String clientMessageId = UUID.randomUUID().toString();
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = userId2;
+        message.content = "Только один раз";
+        message.clientMessageId = clientMessageId;
+
+        Response first = given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .andReturn();
+        first.then()
+                .statusCode(201)
+                .header("Idempotent-Replayed", nullValue());
+        int id = first.path("id");
+
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(201)
+                .header("Idempotent-Replayed", is("true"))
+                .body("id", is(id))
+                .body("content", is("Только один раз"));
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("with", userId2)
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1));
+    }
+
+    @Test
+    public void testConcurrentRetriesCreateOneMessage() throws Exception {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = userId2;
+        message.content = "Гонка повторов";
+        message.clientMessageId = UUID.randomUUID().toString();
+
+        List<CompletableFuture<Integer>> retries = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            retries.add(CompletableFuture.supplyAsync(() -> given()
+                    .auth().oauth2(accessToken1)
+                    .contentType(ContentType.JSON)
+                    .body(message)
+                    .when()
+                    .post("/messages")
+                    .then()
+                    .statusCode(201)
+                    .extract()
+                    .<Integer>path("id")));
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (CompletableFuture<Integer> retry : retries) {
+            ids.add(retry.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, ids.size());
+
+        given()
+                .auth().oauth2(accessToken2)
+                .queryParam("with", userId1)
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1));
+    }
+
+    @Test
+    public void testSendRejectsTooLongClientMessageId() {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = userId2;
+        message.content = "Привет";
+        message.clientMessageId = "x".repeat(65);
+
+        given()
+                .auth().oauth2(accessToken1)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testLongPollReturnsWhenMessageArrives() throws Exception {
+        CompletableFuture<Response> poll = CompletableFuture.supplyAsync(() -> given()
+                .auth().oauth2(accessToken2)
+                .queryParam("wait", "20s")
+                .when()
+                .get("/messages")
+                .andReturn());
+
+        // Даём запросу встать в ожидание, затем отправляем сообщение
+        Thread.sleep(500);
+        long sentAt = System.nanoTime();
+        sendMessage(accessToken1, userId2, "Разбуди меня");
+
+        Response response = poll.get(10, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - sentAt) < 10);
+        response.then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].content", is("Разбуди меня"));
+    }
+
+    @Test
+    public void testLongPollTimesOutWithEmptyPage() {
+        long start = System.nanoTime();
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("wait", "1s")
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(200)
+                .body("size()", is(0));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+    }
+
+    @Test
+    public void testLongPollInvalidWait() {
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("wait", "2h")
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(400);
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("wait", "61s")
+                .when()
+                .get("/messages")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testStreamPushesNewMessageToRecipient() throws InterruptedException {
+        LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+        WebSocketClientConnection connection = BasicWebSocketConnector.create()
+                .baseUri(baseUri)
+                .path("/messages/stream")
+                .addHeader("Authorization", "Bearer " + accessToken2)
+                .onTextMessage((c, message) -> received.add(message))
+                .connectAndAwait();
+        try {
+            sendMessage(accessToken1, userId2, "Привет по WebSocket!");
+
+            String pushed = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(pushed);
+            assertTrue(pushed.contains("Привет по WebSocket!"));
+            assertTrue(pushed.contains("\"senderId\":" + userId1));
+        } finally {
+            connection.closeAndAwait();
+        }
+    }
+
+    @Test
+    public void testStreamReplaysMissedMessages() throws InterruptedException {
+        int firstId = sendMessage(accessToken1, userId2, "Первое");
+        sendMessage(accessToken1, userId2, "Пропущенное");
+
+        LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+        WebSocketClientConnection connection = BasicWebSocketConnector.create()
+                .baseUri(baseUri)
+                .path("/messages/stream?after=" + firstId)
+                .addHeader("Authorization", "Bearer " + accessToken2)
+                .onTextMessage((c, message) -> received.add(message))
+                .connectAndAwait();
+        try {
+            String replayed = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(replayed);
+            assertTrue(replayed.contains("Пропущенное"));
+        } finally {
+            connection.closeAndAwait();
+        }
+    }
+
+    @Test
+    public void testStreamReplaysMoreThanSendQueueSize() throws InterruptedException {
+        int firstId = sendMessage(accessToken1, userId2, "Первое");
+        int missedCount = sendQueueSize + 50;
+        QuarkusTransaction.requiringNew().run(() -> {
+            User sender = User.findById(userId1);
+            User recipient = User.findById(userId2);
+            LocalDateTime timestamp = LocalDateTime.now();
+            for (int i = 0; i < missedCount; i++) {
+                Message message = new Message();
+                message.sender = sender;
+                message.recipient = recipient;
+                message.content = "Пропущенное " + i;
+                message.timestamp = timestamp.plusNanos(1000L * (i + 1));
+                message.persist();
+            }
+        });
+
+        LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+        WebSocketClientConnection connection = BasicWebSocketConnector.create()
+                .baseUri(baseUri)
+                .path("/messages/stream?after=" + firstId)
+                .addHeader("Authorization", "Bearer " + accessToken2)
+                .onTextMessage((c, message) -> received.add(message))
+                .connectAndAwait();
+        try {
+            for (int i = 0; i < missedCount; i++) {
+                String replayed = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(replayed, "replayed " + i + " of " + missedCount);
+                assertTrue(replayed.contains("Пропущенное " + i + "\""), replayed);
+            }
+            assertTrue(connection.isOpen());
+        } finally {
+            connection.closeAndAwait();
+        }
+    }
+
+    @Test
+    public void testStreamUnauthorized() {
+        assertThrows(Exception.class, () -> BasicWebSocketConnector.create()
+                .baseUri(baseUri)
+                .path("/messages/stream")
+                .connectAndAwait());
+    }
+
+    private int sendMessage(String accessToken, Long recipientId, String content) {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = recipientId;
+        message.content = content;
+
+        return given()
+                .auth().oauth2(accessToken)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(201)
+                .extract()
+                .path("id");
+    }
+
     // Остальные тесты остаются без изменений
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package org.acme;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import jakarta.transaction.Transactional;
+import org.acme.dto.AuthDTO;
+import org.acme.dto.MessageDTO;
+import org.acme.model.Contact;
+import org.acme.model.Message;
+import org.acme.model.RefreshToken;
+import org.acme.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+
+@QuarkusTest
+public class MessageSearchResourceTest {
+
+    private String accessToken1;
+    private String accessToken2;
+    private Long userId1;
+    private Long userId2;
+    private Long userId3;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        // Очищаем только связанные таблицы
+        Contact.deleteAll();
+        Message.deleteAll();
+        RefreshToken.deleteAll();
+
+        String email1 = "user1-" + UUID.randomUUID() + "@quarkus.io";
+        String email2 = "user2-" + UUID.randomUUID() + "@quarkus.io";
+        String email3 = "user3-" + UUID.randomUUID() + "@quarkus.io";
+        accessToken1 = register(email1, "John", "Doe").jsonPath().getString("accessToken");
+        accessToken2 = register(email2, "Jane", "Smith").jsonPath().getString("accessToken");
+        register(email3, "Jim", "Beam");
+        userId1 = User.findByEmail(email1).id;
+        userId2 = User.findByEmail(email2).id;
+        userId3 = User.findByEmail(email3).id;
+    }
+
+    @Test
+    public void testSearchMatchesWordFormsAndHighlights() {
+        sendMessage(accessToken1, userId2, "Встречаемся завтра у офиса");
+        sendMessage(accessToken2, userId1, "Офис закрыт на ремонт, офисные пропуска не работают");
+        sendMessage(accessToken1, userId2, "Купи хлеба");
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("q", "офис")
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .body("message.content", hasItem("Встречаемся завтра у офиса"))
+                .body("highlight", hasItem(containsString("у <mark>офиса</mark>")));
+    }
+
+    @Test
+    public void testSearchIsLimitedToCallerMessages() {
+        sendMessage(accessToken1, userId2, "Отчёт готов");
+        sendMessage(accessToken2, userId3, "Отчёт для третьего");
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("q", "отчёт")
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].message.content", is("Отчёт готов"));
+
+        // С параметром with — только переписка с этим пользователем
+        given()
+                .auth().oauth2(accessToken2)
+                .queryParam("q", "отчёт")
+                .queryParam("with", userId3)
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].message.recipientId", is(userId3.intValue()));
+    }
+
+    @Test
+    public void testSearchPaginates() {
+        for (int i = 0; i < 5; i++) {
+            sendMessage(accessToken1, userId2, "Напоминание номер " + i);
+        }
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("q", "напоминание")
+                .queryParam("limit", 2)
+                .queryParam("page", 2)
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1));
+    }
+
+    @Test
+    public void testSearchHighlightEscapesHtml() {
+        sendMessage(accessToken1, userId2, "<script>alert(1)</script> секрет");
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("q", "секрет")
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(200)
+                .body("[0].highlight", containsString("<mark>секрет</mark>"))
+                .body("[0].highlight", not(containsString("<script>")));
+    }
+
+    @Test
+    public void testSearchInvalidParameters() {
+        given()
+                .auth().oauth2(accessToken1)
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(400)
+                .body("error", is("Параметр 'q' обязателен"));
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("q", "офис")
+                .queryParam("limit", 51)
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(400);
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("q", "офис")
+                .queryParam("page", 100)
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(400);
+
+        given()
+                .auth().oauth2(accessToken1)
+                .queryParam("q", "офис")
+                .queryParam("with", Long.MAX_VALUE)
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    public void testSearchUnauthorized() {
+        given()
+                .queryParam("q", "офис")
+                .when()
+                .get("/messages/search")
+                .then()
+                .statusCode(401);
+    }
+
+    private static void sendMessage(String accessToken, Long recipientId, String content) {
+        MessageDTO.CreateMessage message = new MessageDTO.CreateMessage();
+        message.recipientId = recipientId;
+        message.content = content;
+
+        given()
+                .auth().oauth2(accessToken)
+                .contentType(ContentType.JSON)
+                .body(message)
+                .when()
+                .post("/messages")
+                .then()
+                .statusCode(201);
+    }
+
+    private Response register(String email, String firstName, String lastName) {
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = firstName;
+        registration.lastName = lastName;
+
+        return given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .andReturn();
+    }
+}
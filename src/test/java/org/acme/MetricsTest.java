@@ -0,0 +1,52 @@
+package org.acme;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.acme.dto.AuthDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+
+@QuarkusTest
+public class MetricsTest {
+
+    @Test
+    public void testPrometheusEndpointExposesApplicationMetrics() {
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = "metrics-" + UUID.randomUUID() + "@quarkus.io";
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = "John";
+        registration.lastName = "Doe";
+
+        String accessToken = given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .jsonPath().getString("accessToken");
+
+        given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/contacts")
+                .then()
+                .statusCode(200);
+
+        given()
+                .when()
+                .get("/q/metrics")
+                .then()
+                .statusCode(200)
+                .body(containsString("http_server_requests_seconds_bucket"))
+                .body(containsString("uri=\"/contacts\""))
+                .body(containsString("chat_jwt_sign_seconds_count"))
+                .body(containsString("chat_password_hashing_seconds_count"))
+                .body(containsString("chat_repository_query_seconds_count{class=\"org.acme.repository.ContactRepository\""))
+                .body(containsString("agroal_"))
+                .body(containsString("hibernate_"));
+    }
+}
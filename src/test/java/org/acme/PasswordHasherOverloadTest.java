@@ -0,0 +1,83 @@
+package org.acme;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.Response;
+import org.acme.service.PasswordHasher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пул BCrypt из одного потока с очередью на одну операцию: одновременные запросы сверх этого сразу получают 503.
+ */
+@QuarkusTest
+@TestProfile(PasswordHasherOverloadTest.TinyPoolProfile.class)
+public class PasswordHasherOverloadTest {
+
+    private static final int REQUESTS = 16;
+
+    public static class TinyPoolProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("chat.password-hashing.threads", "1",
+                    "chat.password-hashing.queue-size", "1",
+                    // Принятые операции должны дождаться своей очереди, а не упасть по таймауту
+                    "chat.password-hashing.timeout", "30s");
+        }
+    }
+
+    @Inject
+    PasswordHasher passwordHasher;
+
+    @Test
+    public void testFullQueueRejectsWithRetryAfter() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newFixedThreadPool(REQUESTS)) {
+            for (int i = 0; i < REQUESTS; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return passwordHasher.hash("password123");
+                }, callers));
+            }
+            start.countDown();
+        }
+
+        int completed = 0;
+        int rejected = 0;
+        for (CompletableFuture<String> result : results) {
+            try {
+                result.get();
+                completed++;
+            } catch (ExecutionException e) {
+                ServiceUnavailableException unavailable = (ServiceUnavailableException) e.getCause();
+                Response response = unavailable.getResponse();
+                assertEquals(503, response.getStatus());
+                assertEquals("1", response.getHeaderString("Retry-After"));
+                rejected++;
+            }
+        }
+        // Одна операция выполняется, одна ждёт в очереди; остальные пришли, пока обе были заняты
+        assertTrue(completed >= 2, "completed: " + completed);
+        assertTrue(rejected > 0, "rejected: " + rejected);
+        assertEquals(REQUESTS, completed + rejected);
+    }
+}
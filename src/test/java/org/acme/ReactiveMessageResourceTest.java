@@ -0,0 +1,22 @@
+package org.acme;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+
+import java.util.Map;
+
+/**
+ * Те же сценарии сообщений на реактивной реализации (ReactiveMessageResource).
+ */
+@QuarkusTest
+@TestProfile(ReactiveMessageResourceTest.ReactiveProfile.class)
+public class ReactiveMessageResourceTest extends MessageResourceTest {
+
+    public static class ReactiveProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("chat.messages.reactive", "true");
+        }
+    }
+}
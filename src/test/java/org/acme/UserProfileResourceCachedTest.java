@@ -0,0 +1,71 @@
+package org.acme;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.acme.controller.UserProfileResource;
+import org.acme.service.UserCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Те же сценарии профиля, но с включённым кешем пользователей.
+ */
+@QuarkusTest
+@TestProfile(UserProfileResourceCachedTest.CacheEnabledProfile.class)
+public class UserProfileResourceCachedTest extends UserProfileResourceTest {
+
+    public static class CacheEnabledProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("chat.user-cache.enabled", "true");
+        }
+    }
+
+    @Inject
+    UserCache userCache;
+
+    @BeforeEach
+    public void clearCache() {
+        userCache.invalidateAll();
+    }
+
+    @Test
+    public void testPatchProfileInvalidatesCachedProfile() {
+        // Прогреваем кеш
+        given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/profile/" + userId)
+                .then()
+                .statusCode(200)
+                .body("lastName", is("Doe"));
+
+        UserProfileResource.PatchProfileDTO patch = new UserProfileResource.PatchProfileDTO();
+        patch.photoUrl = "https://example.com/cached.jpg";
+        given()
+                .auth().oauth2(accessToken)
+                .contentType(ContentType.JSON)
+                .body(patch)
+                .when()
+                .patch("/profile")
+                .then()
+                .statusCode(200)
+                .body("photoUrl", is("https://example.com/cached.jpg"));
+
+        given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/profile/" + userId)
+                .then()
+                .statusCode(200)
+                .body("photoUrl", is("https://example.com/cached.jpg"));
+    }
+}
@@ -21,8 +21,8 @@ import static org.hamcrest.CoreMatchers.*;
 @QuarkusTest
 public class UserProfileResourceTest {
 
-    private String accessToken;
-    private Long userId;
+    String accessToken;
+    Long userId;
 
     @BeforeEach
     @Transactional
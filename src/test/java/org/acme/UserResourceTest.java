@@ -14,7 +14,8 @@ import org.junit.jupiter.api.Test;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
-import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @QuarkusTest
 public class UserResourceTest {
@@ -29,22 +30,23 @@ public class UserResourceTest {
         Message.deleteAll();
         RefreshToken.deleteAll();
 
-        String email = "testuser-" + UUID.randomUUID() + "@quarkus.io";
+        accessToken = register("John", "Doe");
+    }
+
+    private String register(String firstName, String lastName) {
         AuthDTO.Registration registration = new AuthDTO.Registration();
-        registration.email = email;
+        registration.email = "testuser-" + UUID.randomUUID() + "@quarkus.io";
         registration.password = "password123";
         registration.birthdate = "2001-07-13";
-        registration.firstName = "John";
-        registration.lastName = "Doe";
+        registration.firstName = firstName;
+        registration.lastName = lastName;
 
-        Response response = given()
+        return given()
                 .contentType(ContentType.JSON)
                 .body(registration)
                 .when()
                 .post("/auth/register")
-                .andReturn();
-
-        accessToken = response.jsonPath().getString("accessToken");
+                .jsonPath().getString("accessToken");
     }
 
     @Test
@@ -61,6 +63,164 @@ public class UserResourceTest {
                 .body("[0].lastName", is("Doe"));
     }
 
+    @Test
+    public void testGetUsersPaged() {
+        Response firstPage = given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/users?limit=1")
+                .andReturn();
+        firstPage.then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].firstName", is("John"))
+                .body("[0].password", nullValue())
+                .body("[0].email", nullValue());
+
+        // Регистрируем второго пользователя, чтобы следующая страница точно существовала
+        register("John", "Second");
+        Response newest = given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/users?limit=1")
+                .andReturn();
+        String cursor = newest.getHeader("X-Next-Cursor");
+        assertNotNull(cursor);
+        Long newestId = newest.jsonPath().getLong("[0].id");
+
+        given()
+                .auth().oauth2(accessToken)
+                .queryParam("limit", 1)
+                .queryParam("cursor", cursor)
+                .when()
+                .get("/users")
+                .then()
+                .statusCode(200)
+                .body("size()", is(1))
+                .body("[0].id", lessThan(newestId.intValue()));
+    }
+
+    @Test
+    public void testGetUsersInvalidParameters() {
+        given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/users?cursor=not-a-cursor")
+                .then()
+                .statusCode(400)
+                .body("error", is("Неверный курсор"));
+
+        given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/users?limit=0")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testStreamAllUsers() {
+        int total = given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/users?limit=500")
+                .jsonPath().getList("$").size();
+
+        given()
+                .auth().oauth2(accessToken)
+                .when()
+                .get("/users/stream")
+                .then()
+                .statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("size()", is(total))
+                .body("[0].username", startsWith("@User"))
+                .body("[0].firstName", is("John"));
+    }
+
+    @Test
+    public void testSearchUsersRanksExactFirst() {
+        String lastName = "Searchable" + UUID.randomUUID().toString().substring(0, 8);
+        register("Anna", lastName);
+        register("Anna", lastName + "x");
+
+        given()
+                .auth().oauth2(accessToken)
+                .queryParam("q", lastName.toUpperCase())
+                .when()
+                .get("/users/search")
+                .then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .body("[0].lastName", is(lastName))
+                .body("[1].lastName", is(lastName + "x"))
+                .body("[0].email", nullValue());
+
+        // Опечатка в середине фамилии
+        String typo = lastName.substring(0, 4) + lastName.substring(5);
+        given()
+                .auth().oauth2(accessToken)
+                .queryParam("q", typo)
+                .when()
+                .get("/users/search")
+                .then()
+                .statusCode(200)
+                .body("lastName", hasItem(lastName));
+    }
+
+    @Test
+    public void testSearchUsersShortQueryMatchesUsernamePrefix() {
+        given()
+                .auth().oauth2(accessToken)
+                .queryParam("q", "@U")
+                .queryParam("limit", 5)
+                .when()
+                .get("/users/search")
+                .then()
+                .statusCode(200)
+                .body("size()", greaterThan(0))
+                .body("size()", lessThanOrEqualTo(5))
+                .body("username", everyItem(startsWith("@U")));
+    }
+
+    @Test
+    public void testSearchUsersCommonUsernamePrefix() {
+        register("John", "Third");
+
+        // Совпадает с каждым пользователем: username всегда начинается с "@User"
+        given()
+                .auth().oauth2(accessToken)
+                .queryParam("q", "user")
+                .queryParam("limit", 2)
+                .when()
+                .get("/users/search")
+                .then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .body("username", everyItem(startsWith("@User")));
+    }
+
+    @Test
+    public void testSearchUsersInvalidQuery() {
+        given()
+                .auth().oauth2(accessToken)
+                .queryParam("q", " ")
+                .when()
+                .get("/users/search")
+                .then()
+                .statusCode(400)
+                .body("error", is("Параметр 'q' обязателен"));
+
+        given()
+                .auth().oauth2(accessToken)
+                .queryParam("q", "John")
+                .queryParam("limit", 51)
+                .when()
+                .get("/users/search")
+                .then()
+                .statusCode(400);
+    }
+
     @Test
     public void testGetAllUsersUnauthorized() {
         given()
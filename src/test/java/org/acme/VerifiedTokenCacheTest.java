@@ -0,0 +1,111 @@
+package org.acme;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.acme.dto.AuthDTO;
+import org.acme.model.User;
+import org.acme.util.CachingJWTCallerPrincipalFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+public class VerifiedTokenCacheTest {
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    CachingJWTCallerPrincipalFactory principalFactory;
+
+    @ConfigProperty(name = "chat.jwt.verified-cache.maximum-size")
+    long maximumSize;
+
+    String email;
+    String accessToken;
+    Long userId;
+
+    @BeforeEach
+    public void setup() {
+        email = "verified-" + UUID.randomUUID() + "@quarkus.io";
+        AuthDTO.Registration registration = new AuthDTO.Registration();
+        registration.email = email;
+        registration.password = "password123";
+        registration.birthdate = "2001-07-13";
+        registration.firstName = "John";
+        registration.lastName = "Doe";
+
+        accessToken = given()
+                .contentType(ContentType.JSON)
+                .body(registration)
+                .when()
+                .post("/auth/register")
+                .then()
+                .statusCode(201)
+                .extract().path("accessToken");
+        userId = QuarkusTransaction.requiringNew().call(() -> User.findByEmail(email).id);
+    }
+
+    @Test
+    public void testRepeatedTokenIsServedFromCache() {
+        getOwnProfile(accessToken, 200);
+        double hits = cacheHits();
+        getOwnProfile(accessToken, 200);
+        getOwnProfile(accessToken, 200);
+        assertEquals(hits + 2, cacheHits());
+    }
+
+    @Test
+    public void testTamperedTokenIsNotServedFromCache() {
+        getOwnProfile(accessToken, 200);
+
+        int signatureStart = accessToken.lastIndexOf('.') + 1;
+        char first = accessToken.charAt(signatureStart);
+        String tampered = accessToken.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A')
+                + accessToken.substring(signatureStart + 1);
+        getOwnProfile(tampered, 401);
+    }
+
+    @Test
+    public void testTokensOfDeactivatedUserAreRejected() {
+        getOwnProfile(accessToken, 200);
+
+        QuarkusTransaction.requiringNew().run(() -> User.findByEmail(email).deactivate());
+
+        getOwnProfile(accessToken, 401);
+    }
+
+    @Test
+    public void testRevocationIsNotEvictedBySize() {
+        getOwnProfile(accessToken, 200);
+        QuarkusTransaction.requiringNew().run(() -> User.findByEmail(email).deactivate());
+
+        // Отзывов больше, чем chat.jwt.verified-cache.maximum-size
+        for (long otherId = -1; otherId >= -2 * maximumSize; otherId--) {
+            principalFactory.revokeAll(otherId);
+        }
+
+        getOwnProfile(accessToken, 401);
+    }
+
+    private void getOwnProfile(String token, int expectedStatus) {
+        given()
+                .auth().oauth2(token)
+                .when()
+                .get("/profile/" + userId)
+                .then()
+                .statusCode(expectedStatus);
+    }
+
+    private double cacheHits() {
+        return registry.get("cache.gets").tag("cache", "verified_tokens").tag("result", "hit").functionCounter().count();
+    }
+}
@@ -0,0 +1,135 @@
+package org.acme.load;
+
+import io.quarkus.elytron.security.common.BcryptUtil;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+/**
+ * Заполняет базу пользователями, контактами, сообщениями и диалогами прямо через SQL (generate_series),
+ * минуя API: миллион сообщений вставляется за секунды, а не за часы.
+ * <p>
+ * Идентификаторы берутся блоком из тех же последовательностей, что использует Hibernate, и последовательность
+ * сдвигается за конец блока, поэтому сущности, созданные приложением во время прогона, с ними не пересекаются.
+ */
+public class LoadDataSeeder {
+
+    public static final String PASSWORD = "password123";
+
+    private static final int SEED_TIMEOUT_SECONDS = 3600;
+
+    private final EntityManager entityManager;
+
+    public LoadDataSeeder(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Диапазон идентификаторов засеянных пользователей: {@code firstUserId .. firstUserId + users - 1}.
+     */
+    public static final class SeededUsers {
+        public final long firstUserId;
+        public final int users;
+        public final int contactsPerUser;
+
+        SeededUsers(long firstUserId, int users, int contactsPerUser) {
+            this.firstUserId = firstUserId;
+            this.users = users;
+            this.contactsPerUser = contactsPerUser;
+        }
+
+        public String email(long userId) {
+            return "load" + userId + "@example.com";
+        }
+
+        /**
+         * {@code k}-й контакт пользователя; совпадает с формулой заполнения Contact.
+         */
+        public long contact(long userId, int k) {
+            long index = userId - firstUserId;
+            return firstUserId + (index + k + 1) % users;
+        }
+    }
+
+    public SeededUsers seed(int users, int contactsPerUser, int messages) {
+        if (contactsPerUser >= users) {
+            throw new IllegalArgumentException("contactsPerUser must be less than users");
+        }
+        long started = System.nanoTime();
+        // Один хеш на всех: BCrypt на каждого пользователя занял бы больше времени, чем сам прогон
+        String passwordHash = BcryptUtil.bcryptHash(PASSWORD);
+
+        long userBase = reserveIds("User_SEQ", users);
+        inTransaction("""
+                insert into app_users (id, email, password, roles, birthdate, username, firstName, lastName, photoUrl, active)
+                select :base + g, 'load' || (:base + g) || '@example.com', :hash, 'User', '1990-01-01', '@Load' || (:base + g),
+                       (array['Aleksandr','Maria','Ivan','Anna','Dmitry','Elena','Sergey','Olga','John','Jane'])[1 + g % 10],
+                       (array['Ivanov','Petrova','Smirnov','Kuznetsova','Popov','Sokolova','Lebedev','Doe','Smith','Novikova'])[1 + (g / 10) % 10],
+                       null, true
+                from generate_series(0, :users - 1) g
+                """, "base", userBase, "hash", passwordHash, "users", users);
+
+        long contactBase = reserveIds("Contact_SEQ", (long) users * contactsPerUser);
+        inTransaction("""
+                insert into Contact (id, owner_id, contact_id)
+                select :base + g, :userBase + g % :users, :userBase + ((g % :users) + g / :users + 1) % :users
+                from generate_series(0, :total - 1) g
+                """, "base", contactBase, "userBase", userBase, "users", users, "total", (long) users * contactsPerUser);
+
+        // Переписка идёт с контактами; часть пользователей пишет заметно чаще остальных
+        long messageBase = reserveIds("Message_SEQ", messages);
+        inTransaction("""
+                insert into Message (id, sender_id, recipient_id, content, "timestamp")
+                select :base + g, :userBase + s, :userBase + (s + 1 + g % :contacts) % :users,
+                       'Load message ' || g || ': обычный текст сообщения средней длины',
+                       localtimestamp - interval '30 days' + g * (interval '30 days' / :messages)
+                from (select g, cast(floor(power(random(), 2) * :users) as bigint) as s
+                      from generate_series(0, :messages - 1) g) m
+                """, "base", messageBase, "userBase", userBase, "users", users, "contacts", contactsPerUser, "messages", messages);
+
+        inTransaction("""
+                insert into conversations (id, userA_id, userB_id, lastMessageId, lastSenderId, lastMessagePreview, lastMessageAt, unreadA, unreadB)
+                select nextval('Conversation_SEQ'), user_a, user_b, id, sender_id, left(content, 100), "timestamp", 0, 0
+                from (
+                    select distinct on (least(sender_id, recipient_id), greatest(sender_id, recipient_id))
+                           least(sender_id, recipient_id) as user_a,
+                           greatest(sender_id, recipient_id) as user_b,
+                           id, sender_id, content, "timestamp"
+                    from Message
+                    where id >= :base
+                    order by least(sender_id, recipient_id), greatest(sender_id, recipient_id), "timestamp" desc, id desc
+                ) latest
+                on conflict (userA_id, userB_id) do nothing
+                """, "base", messageBase);
+
+        QuarkusTransaction.requiringNew().timeout(SEED_TIMEOUT_SECONDS).run(() ->
+                entityManager.createNativeQuery("analyze").executeUpdate());
+
+        Log.infof("Seeded %d users, %d contacts, %d messages in %d s", users, (long) users * contactsPerUser, messages,
+                (System.nanoTime() - started) / 1_000_000_000L);
+        return new SeededUsers(userBase, users, contactsPerUser);
+    }
+
+    /**
+     * Резервирует {@code count} идентификаторов начиная с возвращённого значения. Hibernate выделяет id
+     * пулами по 50 вниз от значения последовательности, поэтому и начало, и конец блока отодвинуты от его пулов.
+     */
+    private long reserveIds(String sequence, long count) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            long base = ((Number) entityManager.createNativeQuery("select nextval('" + sequence + "')").getSingleResult()).longValue() + 1;
+            entityManager.createNativeQuery("select setval('" + sequence + "', " + (base + count + 50) + ")").getSingleResult();
+            return base;
+        });
+    }
+
+    private void inTransaction(String sql, Object... namedParameters) {
+        QuarkusTransaction.requiringNew().timeout(SEED_TIMEOUT_SECONDS).run(() -> {
+            Query query = entityManager.createNativeQuery(sql);
+            for (int i = 0; i < namedParameters.length; i += 2) {
+                query.setParameter((String) namedParameters[i], namedParameters[i + 1]);
+            }
+            query.executeUpdate();
+        });
+    }
+}
@@ -0,0 +1,228 @@
+package org.acme.load;
+
+import io.quarkus.logging.Log;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Замкнутая модель нагрузки: {@code concurrency} виртуальных пользователей, каждый в своём виртуальном потоке,
+ * логинится под случайным засеянным пользователем и выполняет смесь запросов без пауз.
+ * Задержки пишутся в HdrHistogram по каждому эндпоинту (в микросекундах); прогрев не учитывается.
+ * <p>
+ * В замкнутой модели медленный ответ откладывает следующий запрос, поэтому хвосты (p99, p999) занижены
+ * относительно сервиса с фиксированным входящим потоком (coordinated omission). Для сравнения сборок
+ * между собой при одинаковых параметрах этого достаточно.
+ */
+public class LoadDriver {
+
+    enum Operation {
+        LOGIN("POST /auth/login", 5),
+        SEND_MESSAGE("POST /messages", 20),
+        POLL_CONVERSATION("GET /messages?with", 30),
+        POLL_ALL("GET /messages", 15),
+        CONTACTS("GET /contacts", 15),
+        PROFILE("GET /profile/{id}", 15);
+
+        final String endpoint;
+        final int weight;
+
+        Operation(String endpoint, int weight) {
+            this.endpoint = endpoint;
+            this.weight = weight;
+        }
+    }
+
+    private static final Pattern ACCESS_TOKEN = Pattern.compile("\"accessToken\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+    private final LoadDataSeeder.SeededUsers seeded;
+    private final HttpClient client;
+    private final Map<Operation, Recorder> recorders = new LinkedHashMap<>();
+    private final Map<Operation, AtomicLong> errors = new LinkedHashMap<>();
+    private final int totalWeight;
+
+    public LoadDriver(URI baseUri, LoadDataSeeder.SeededUsers seeded) {
+        this.baseUri = baseUri;
+        this.seeded = seeded;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        int weights = 0;
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(3));
+            errors.put(operation, new AtomicLong());
+            weights += operation.weight;
+        }
+        this.totalWeight = weights;
+    }
+
+    /**
+     * Итог прогона по одному эндпоинту: гистограмма задержек (мкс) только за время измерения.
+     */
+    public static final class EndpointResult {
+        public final String endpoint;
+        public final Histogram latencyMicros;
+        public final long errors;
+        public final double throughput;
+
+        EndpointResult(String endpoint, Histogram latencyMicros, long errors, double throughput) {
+            this.endpoint = endpoint;
+            this.latencyMicros = latencyMicros;
+            this.errors = errors;
+            this.throughput = throughput;
+        }
+    }
+
+    public List<EndpointResult> run(int concurrency, Duration warmup, Duration duration) throws InterruptedException {
+        long warmupEnd = System.nanoTime() + warmup.toNanos();
+        long end = warmupEnd + duration.toNanos();
+
+        try (ExecutorService virtualUsers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                virtualUsers.submit(() -> virtualUser(end));
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, warmupEnd - System.nanoTime()));
+            // Сбрасываем накопленное за прогрев
+            recorders.values().forEach(Recorder::reset);
+            errors.values().forEach(counter -> counter.set(0));
+        }
+
+        double seconds = duration.toNanos() / 1_000_000_000.0;
+        List<EndpointResult> results = new ArrayList<>();
+        recorders.forEach((operation, recorder) -> {
+            Histogram histogram = recorder.getIntervalHistogram();
+            results.add(new EndpointResult(operation.endpoint, histogram, errors.get(operation).get(),
+                    histogram.getTotalCount() / seconds));
+        });
+        return results;
+    }
+
+    private void virtualUser(long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long userId = seeded.firstUserId + random.nextInt(seeded.users);
+        String token = null;
+        while (System.nanoTime() < end) {
+            try {
+                Operation operation = token == null ? Operation.LOGIN : pick(random);
+                switch (operation) {
+                    case LOGIN -> {
+                        userId = seeded.firstUserId + random.nextInt(seeded.users);
+                        String body = "{\"email\":\"" + seeded.email(userId) + "\",\"password\":\"" + LoadDataSeeder.PASSWORD + "\"}";
+                        HttpResponse<String> response = execute(operation, HttpRequest.newBuilder(baseUri.resolve("auth/login"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body)));
+                        Matcher matcher = ACCESS_TOKEN.matcher(response.body());
+                        if (matcher.find()) {
+                            token = matcher.group(1);
+                        }
+                    }
+                    case SEND_MESSAGE -> {
+                        long recipient = seeded.contact(userId, random.nextInt(seeded.contactsPerUser));
+                        String body = "{\"recipientId\":" + recipient + ",\"content\":\"Нагрузочное сообщение " + random.nextInt() + "\"}";
+                        execute(operation, authorized(token, "messages")
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body)));
+                    }
+                    case POLL_CONVERSATION -> {
+                        long with = seeded.contact(userId, random.nextInt(seeded.contactsPerUser));
+                        execute(operation, authorized(token, "messages?with=" + with + "&direction=backward&limit=50").GET());
+                    }
+                    case POLL_ALL -> execute(operation, authorized(token, "messages?direction=backward&limit=100").GET());
+                    case CONTACTS -> execute(operation, authorized(token, "contacts").GET());
+                    case PROFILE -> execute(operation, authorized(token, "profile/" + (seeded.firstUserId + random.nextInt(seeded.users))).GET());
+                }
+            } catch (IOException e) {
+                Log.debugf(e, "Load request failed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (Operation operation : Operation.values()) {
+            roll -= operation.weight;
+            if (roll < 0) {
+                return operation;
+            }
+        }
+        return Operation.PROFILE;
+    }
+
+    private HttpRequest.Builder authorized(String token, String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private HttpResponse<String> execute(Operation operation, HttpRequest.Builder request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request.timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 400) {
+                errors.get(operation).incrementAndGet();
+            }
+            return response;
+        } catch (IOException e) {
+            errors.get(operation).incrementAndGet();
+            throw e;
+        } finally {
+            recorders.get(operation).recordValue((System.nanoTime() - start) / 1_000);
+        }
+    }
+
+    /**
+     * Печатает сводку и сохраняет по каждому эндпоинту распределение (.hgrm) и лог гистограммы (.hlog)
+     * для HistogramLogAnalyzer / сравнения сборок.
+     */
+    public static void report(List<EndpointResult> results, Path directory, PrintStream out) throws IOException {
+        Files.createDirectories(directory);
+        out.printf("%-22s %10s %8s %10s %10s %10s %10s %10s%n", "endpoint", "req/s", "errors", "p50 ms", "p95 ms", "p99 ms", "p999 ms", "max ms");
+        for (EndpointResult result : results) {
+            Histogram histogram = result.latencyMicros;
+            out.printf("%-22s %10.1f %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n", result.endpoint, result.throughput, result.errors,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(95) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+
+            String fileName = result.endpoint.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "");
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(directory.resolve(fileName + ".hgrm")))) {
+                histogram.outputPercentileDistribution(hgrm, 1000.0);
+            }
+            try (PrintStream hlog = new PrintStream(Files.newOutputStream(directory.resolve(fileName + ".hlog")))) {
+                HistogramLogWriter writer = new HistogramLogWriter(hlog);
+                writer.outputComment("endpoint: " + result.endpoint + ", unit: microseconds");
+                writer.outputLogFormatVersion();
+                writer.outputLegend();
+                writer.outputIntervalHistogram(histogram);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.acme.load;
+
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочный прогон всего сервиса против PostgreSQL из Dev Services. В обычной сборке не запускается:
+ * <pre>
+ * ./mvnw test -Pload -Dload.users=10000 -Dload.contacts=20 -Dload.messages=500000 \
+ *     -Dload.concurrency=64 -Dload.warmup=PT15S -Dload.duration=PT60S
+ * </pre>
+ * Сводка печатается в лог, гистограммы по эндпоинтам сохраняются в {@code target/load-results/<время запуска>/}.
+ * Для сравнения виртуальных потоков с пулом воркеров повторите прогон с {@code -Dquarkus.virtual-threads.enabled=false}:
+ * помимо задержек печатаются пик платформенных потоков и занятая куча. Реактивный путь сообщений
+ * сравнивается так же, прогоном с {@code -Dchat.messages.reactive=true}.
+ */
+@QuarkusTest
+@Tag("load")
+@TestProfile(LoadTestProfile.class)
+public class LoadTest {
+
+    @TestHTTPResource("/")
+    URI baseUri;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Test
+    public void mixedWorkload() throws Exception {
+        int users = Integer.getInteger("load.users", 10_000);
+        int contacts = Integer.getInteger("load.contacts", 20);
+        int messages = Integer.getInteger("load.messages", 500_000);
+        int concurrency = Integer.getInteger("load.concurrency", 64);
+        Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT15S"));
+        Duration duration = Duration.parse(System.getProperty("load.duration", "PT60S"));
+
+        LoadDataSeeder.SeededUsers seeded = new LoadDataSeeder(entityManager).seed(users, contacts, messages);
+        List<LoadDriver.EndpointResult> results = new LoadDriver(baseUri, seeded).run(concurrency, warmup, duration);
+
+        Path directory = Path.of("target", "load-results", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        System.out.printf("Load: %d users, %d contacts/user, %d messages, concurrency %d, %s%n",
+                users, contacts, messages, concurrency, duration);
+        LoadDriver.report(results, directory, System.out);
+
+        // Драйвер работает в той же JVM, но его виртуальные потоки одинаковы в обоих режимах
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("Virtual threads: %s, peak platform threads: %d, heap used: %d MB of %d MB%n",
+                System.getProperty("quarkus.virtual-threads.enabled", "true"), threads.getPeakThreadCount(),
+                heap.getUsed() >> 20, heap.getCommitted() >> 20);
+
+        long requests = results.stream().mapToLong(result -> result.latencyMicros.getTotalCount()).sum();
+        long failed = results.stream().mapToLong(result -> result.errors).sum();
+        assertTrue(requests > 0, "No requests completed");
+        assertTrue(failed * 100 < requests, "More than 1% of requests failed: " + failed + " of " + requests);
+    }
+}
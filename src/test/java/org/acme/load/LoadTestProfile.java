@@ -0,0 +1,20 @@
+package org.acme.load;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.util.Map;
+
+/**
+ * Настройки, приближающие тестовый запуск к production: включённый кеш пользователей
+ * и без ограничения логинов (все виртуальные пользователи приходят с одного адреса).
+ */
+public class LoadTestProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        return Map.of(
+                "chat.login-rate-limit.enabled", "false",
+                "chat.user-cache.enabled", "true",
+                "quarkus.hibernate-orm.statistics", "false");
+    }
+}